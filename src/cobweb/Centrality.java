@@ -0,0 +1,380 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import particlesystem.Adjacency;
+import particlesystem.GraphSnapshot;
+
+/**
+ * Degree, closeness, betweenness, PageRank and eigenvector centrality of the
+ * nodes of a snapshot.
+ * Betweenness is computed with Brandes' algorithm: one breadth first search
+ * per source node, followed by the accumulation of the dependencies in
+ * reverse order. The sources are handed out to the worker threads one by
+ * one; every worker sums into its own arrays, which are added up at the end.
+ * 
+ * Instead of all nodes, a random sample of source nodes can be used. The
+ * sums are then scaled by the number of nodes divided by the number of
+ * samples, which gives an unbiased estimate of the betweenness.
+ * 
+ * Closeness is computed from the distances towards a node, following
+ * Wasserman and Faust for networks that are not connected: the number of
+ * nodes that reach the node divided by the sum of their distances, weighted
+ * by the fraction of nodes that reach it. For directed networks this is the
+ * closeness of the incoming paths.
+ * 
+ * PageRank and eigenvector centrality are computed by power iteration, see
+ * GraphFunctions.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class Centrality {
+	/**
+	 * The probability of the random surfer of PageRank to follow an edge
+	 */
+	static final double DAMPING = 0.85;
+
+	/**
+	 * The power iterations stop when the values change by less than this in
+	 * sum
+	 */
+	static final double TOLERANCE = 1e-8;
+
+	/**
+	 * The maximal number of power iterations
+	 */
+	static final int MAX_ITERATIONS = 100;
+
+	/**
+	 * The snapshot the centralities were computed for
+	 */
+	final GraphSnapshot snapshot;
+
+	/**
+	 * The number of distinct neighbours of each node, in both directions
+	 */
+	final float[] degree;
+
+	/**
+	 * The closeness of each node
+	 */
+	final float[] closeness;
+
+	/**
+	 * The betweenness of each node
+	 */
+	final float[] betweenness;
+
+	/**
+	 * The PageRank of each node
+	 */
+	final float[] pageRank;
+
+	/**
+	 * The eigenvector centrality of each node
+	 */
+	final float[] eigenvector;
+
+	/**
+	 * The number of source nodes the closeness and betweenness are based on
+	 */
+	final int samples;
+
+	/**
+	 * Compute the centralities of the nodes of the given snapshot
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param samples
+	 *            The number of randomly chosen source nodes, 0 or at least the
+	 *            number of nodes for exact values
+	 * @param weighted
+	 *            Whether PageRank and eigenvector centrality take the edge
+	 *            weights into account
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the workers
+	 */
+	Centrality (GraphSnapshot s, int samples, boolean weighted) throws InterruptedException {
+		this.snapshot = s;
+
+		Adjacency a = s.getAdjacency();
+		int n = a.size();
+
+		degree = new float[n];
+		int[] offsets = a.getOffsets();
+		for (int v = 0; v < n; ++v)
+			degree[v] = offsets[v + 1] - offsets[v];
+
+		// the sources, a random sample is the prefix of a partial shuffle
+		int[] sources = new int[n];
+		for (int v = 0; v < n; ++v)
+			sources[v] = v;
+		if (samples > 0 && samples < n) {
+			Random rand = new Random();
+			for (int i = 0; i < samples; ++i) {
+				int j = i + rand.nextInt(n - i);
+				int t = sources[i];
+				sources[i] = sources[j];
+				sources[j] = t;
+			}
+			sources = Arrays.copyOf(sources, samples);
+		}
+		this.samples = sources.length;
+
+		AtomicInteger next = new AtomicInteger(0);
+		ArrayList<Worker> workers = new ArrayList<Worker>();
+		for (int i = 0; i < Math.min(Parallel.threads(), Math.max(1, sources.length)); ++i)
+			workers.add(new Worker(a, sources, next));
+
+		double[] dependency = new double[n];
+		double[] distanceSum = new double[n];
+		int[] reachedBy = new int[n];
+		for (Worker w : Parallel.invokeAll(workers)) {
+			for (int v = 0; v < n; ++v) {
+				dependency[v] += w.dependency[v];
+				distanceSum[v] += w.distanceSum[v];
+				reachedBy[v] += w.reachedBy[v];
+			}
+		}
+
+		// every shortest path of an undirected network is found from both ends
+		double scale = sources.length == 0 ? 0 : (double) n / sources.length;
+		if (!a.isDirected())
+			scale /= 2;
+
+		closeness = new float[n];
+		betweenness = new float[n];
+		for (int v = 0; v < n; ++v) {
+			betweenness[v] = (float) (dependency[v] * scale);
+
+			// the number of reaching nodes is estimated from the samples
+			if (distanceSum[v] > 0) {
+				double reached = reachedBy[v] * (double) n / Math.max(1, sources.length);
+				closeness[v] = (float) ((reachedBy[v] / distanceSum[v]) * (reached / Math.max(1, n - 1)));
+			}
+		}
+
+		pageRank = GraphFunctions.pageRank(s, weighted, DAMPING, TOLERANCE, MAX_ITERATIONS);
+		eigenvector = GraphFunctions.eigenvectorCentrality(s, weighted, TOLERANCE, MAX_ITERATIONS);
+	}
+
+	/**
+	 * Return the values of the given measure
+	 * 
+	 * @param measure
+	 *            The measure: degree, closeness, betweenness, pagerank or
+	 *            eigenvector
+	 * @return The value of each node or null if the measure is unknown
+	 */
+	float[] get (String measure) {
+		if (measure.equalsIgnoreCase("degree"))
+			return degree;
+		else if (measure.equalsIgnoreCase("closeness"))
+			return closeness;
+		else if (measure.equalsIgnoreCase("betweenness"))
+			return betweenness;
+		else if (measure.equalsIgnoreCase("pagerank"))
+			return pageRank;
+		else if (measure.equalsIgnoreCase("eigenvector"))
+			return eigenvector;
+
+		return null;
+	}
+
+	/**
+	 * Return the index of the node with the largest value
+	 * 
+	 * @param values
+	 *            The value of each node
+	 * @return The index of the node or -1 if there are no nodes
+	 */
+	static int indexOfMaximum (float[] values) {
+		int best = -1;
+		for (int v = 0; v < values.length; ++v)
+			if (best == -1 || values[v] > values[best])
+				best = v;
+
+		return best;
+	}
+
+	/**
+	 * Return the indices of the nodes with the largest values
+	 * 
+	 * @param values
+	 *            The value of each node, none of them negative
+	 * @param count
+	 *            The maximal number of nodes
+	 * @return The indices of at most count nodes, ordered by decreasing value
+	 */
+	static int[] indicesOfLargest (float[] values, int count) {
+		// the values are not negative, so their bits sort like them
+		long[] order = new long[values.length];
+		for (int i = 0; i < values.length; ++i)
+			order[i] = ((long) Float.floatToIntBits(values[i]) << 32) | i;
+		Arrays.sort(order);
+
+		int[] largest = new int[Math.max(0, Math.min(count, order.length))];
+		for (int i = 0; i < largest.length; ++i)
+			largest[i] = (int) order[order.length - 1 - i];
+
+		return largest;
+	}
+
+	/**
+	 * Runs the searches of the sources that it takes from the shared counter
+	 * and accumulates their results
+	 */
+	private static class Worker implements Callable<Worker> {
+		/**
+		 * The adjacency of the network
+		 */
+		final Adjacency a;
+
+		/**
+		 * The source nodes of all workers
+		 */
+		final int[] sources;
+
+		/**
+		 * The position of the next source that is to be searched
+		 */
+		final AtomicInteger next;
+
+		/**
+		 * The summed dependencies of the searched sources on each node
+		 */
+		final double[] dependency;
+
+		/**
+		 * The summed distances from the searched sources to each node
+		 */
+		final double[] distanceSum;
+
+		/**
+		 * The number of searched sources that reach each node
+		 */
+		final int[] reachedBy;
+
+		/**
+		 * Create a worker
+		 * 
+		 * @param a
+		 *            The adjacency of the network
+		 * @param sources
+		 *            The source nodes of all workers
+		 * @param next
+		 *            The position of the next source that is to be searched
+		 */
+		Worker (Adjacency a, int[] sources, AtomicInteger next) {
+			this.a = a;
+			this.sources = sources;
+			this.next = next;
+
+			dependency = new double[a.size()];
+			distanceSum = new double[a.size()];
+			reachedBy = new int[a.size()];
+		}
+
+		/**
+		 * Search from sources until none is left
+		 * 
+		 * @return This worker
+		 */
+		public Worker call () {
+			int n = a.size();
+			int[] successorOffsets = a.getSuccessorOffsets();
+			int[] successors = a.getSuccessors();
+			int[] predecessorOffsets = a.getPredecessorOffsets();
+			int[] predecessors = a.getPredecessors();
+
+			int[] distance = new int[n];
+			double[] paths = new double[n];
+			double[] delta = new double[n];
+			int[] queue = new int[n];
+			Arrays.fill(distance, -1);
+
+			int i;
+			while ((i = next.getAndIncrement()) < sources.length) {
+				if (Thread.currentThread().isInterrupted())
+					break;
+
+				int source = sources[i];
+				distance[source] = 0;
+				paths[source] = 1;
+				queue[0] = source;
+				int head = 0;
+				int tail = 1;
+
+				// count the shortest paths to each node
+				while (head < tail) {
+					int v = queue[head++];
+					for (int k = successorOffsets[v]; k < successorOffsets[v + 1]; ++k) {
+						int w = successors[k];
+						// parallel edges lie next to each other in a row
+						if (k > successorOffsets[v] && w == successors[k - 1])
+							continue;
+
+						if (distance[w] == -1) {
+							distance[w] = distance[v] + 1;
+							queue[tail++] = w;
+						}
+						if (distance[w] == distance[v] + 1)
+							paths[w] += paths[v];
+					}
+				}
+
+				// accumulate the dependencies in order of decreasing distance
+				for (int j = tail - 1; j > 0; --j) {
+					int w = queue[j];
+					double coefficient = (1 + delta[w]) / paths[w];
+					for (int k = predecessorOffsets[w]; k < predecessorOffsets[w + 1]; ++k) {
+						int v = predecessors[k];
+						if (k > predecessorOffsets[w] && v == predecessors[k - 1])
+							continue;
+
+						if (distance[v] == distance[w] - 1)
+							delta[v] += paths[v] * coefficient;
+					}
+
+					dependency[w] += delta[w];
+					distanceSum[w] += distance[w];
+					reachedBy[w]++;
+				}
+
+				for (int j = 0; j < tail; ++j) {
+					int v = queue[j];
+					distance[v] = -1;
+					paths[v] = 0;
+					delta[v] = 0;
+				}
+			}
+
+			return this;
+		}
+	}
+}
@@ -29,12 +29,13 @@ import guicomponents.GSlider;
 import guicomponents.GTextField;
 import guicomponents.GWSlider;
 
+import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Random;
 
@@ -45,8 +46,13 @@ import netscape.javascript.JSObject;
 import org.apache.commons.codec.binary.Base64;
 
 import particlesystem.Edge;
+import particlesystem.GraphSnapshot;
+import particlesystem.GraphStructure;
+import particlesystem.LayoutJob;
+import particlesystem.LayoutThread;
 import particlesystem.Node;
 import particlesystem.ParticleSystem;
+import particlesystem.PositionBuffer;
 import particlesystem.Vector2D;
 import processing.core.PApplet;
 import processing.core.PFont;
@@ -144,6 +150,53 @@ public class Cobweb extends PApplet {
 	 */
 	Parameters params = null;
 
+	/**
+	 * The time in milliseconds that may be spent per frame to add the nodes
+	 * and edges of a network that is loaded in the background
+	 */
+	static final int LOADING_TIME_PER_FRAME = 15;
+
+	/**
+	 * The number of nodes with the highest values of each centrality measure
+	 * that are reported to the Javascript-function show_centrality
+	 */
+	static final int REPORTED_NODES = 10;
+
+	/**
+	 * The number of nodes up to which the diameter and average path length are
+	 * computed exactly unless a number of samples is given
+	 */
+	static final int EXACT_PATH_NODES = 20000;
+
+	/**
+	 * The number of source nodes the diameter and average path length of
+	 * larger networks are estimated from unless a number of samples is given
+	 */
+	static final int DEFAULT_PATH_SAMPLES = 1024;
+
+	/**
+	 * The builder of the network that is loaded in the background, null if no
+	 * network is loading
+	 */
+	private NetworkBuilder loadingBuilder = null;
+
+	/**
+	 * Whether the layout is computed before the network that is loaded in the
+	 * background is fitted into the window
+	 */
+	private boolean relaxAfterLoading = false;
+
+	/**
+	 * Whether the loaded nodes and edges are being added by the thread of the
+	 * particle system
+	 */
+	private volatile boolean applyingLoadedElements = false;
+
+	/**
+	 * The time when the loading progress was last reported
+	 */
+	private int lastLoadingMessage = 0;
+
 	// variables to calculate the correct viewport after zooming and translating
 	// the view
 	private float translateMouseX = 0f;
@@ -163,6 +216,107 @@ public class Cobweb extends PApplet {
 	 */
 	public float edgeLength;
 
+	/**
+	 * The time in milliseconds that may be spent to compute the layout at
+	 * startup or when the nodes are shuffled or relaxed
+	 */
+	public long layoutTime;
+
+	/**
+	 * The mean kinetic energy of the nodes at which the layout computation is
+	 * stopped early
+	 */
+	public float layoutEnergy;
+
+	/**
+	 * Whether the particle system runs on its own thread instead of being
+	 * updated once per frame
+	 */
+	public boolean backgroundLayout;
+
+	/**
+	 * The maximal number of steps per second of the particle system when it
+	 * runs on its own thread, 0 for no limit
+	 */
+	public int layoutRate;
+
+	/**
+	 * The thread that runs the particle system, null if it is updated once per
+	 * frame
+	 */
+	private volatile LayoutThread layoutThread = null;
+
+	/**
+	 * The relax or shuffle operation that is currently computed, null if none
+	 * is running
+	 */
+	private LayoutJob layoutJob = null;
+
+	/**
+	 * Whether the network is fitted into the window when the current layout
+	 * job has finished
+	 */
+	private boolean fitAfterLayout = false;
+
+	/**
+	 * The time when the progress of the layout job was last reported
+	 */
+	private int lastLayoutMessage = 0;
+
+	/**
+	 * The number of randomly chosen source nodes the closeness and
+	 * betweenness are estimated from, 0 for exact values
+	 */
+	public int centralitySamples;
+
+	/**
+	 * The number of randomly chosen source nodes the diameter and average path
+	 * length are estimated from, 0 for exact values in networks of up to
+	 * EXACT_PATH_NODES nodes and DEFAULT_PATH_SAMPLES in larger ones
+	 */
+	public int pathSamples;
+
+	/**
+	 * The centralities that were computed last, null if none were computed
+	 * yet
+	 */
+	private volatile Centrality centrality = null;
+
+	/**
+	 * The reachability index of the network, null until the first
+	 * reachability query. Once it exists it is rebuilt in the background
+	 * whenever the network changes
+	 */
+	private volatile Reachability reachability = null;
+
+	/**
+	 * The thread that currently builds the reachability index, null if none
+	 */
+	private Thread reachabilityWorker = null;
+
+	/**
+	 * The number of landmarks the distance oracle estimates distances from
+	 */
+	public int landmarks;
+
+	/**
+	 * The distance oracle of the network, null until the first distance
+	 * tooltip. Once it exists it is rebuilt in the background whenever the
+	 * network changes
+	 */
+	private volatile DistanceOracle distanceOracle = null;
+
+	/**
+	 * The thread that currently builds the distance oracle, null if none
+	 */
+	private Thread distanceOracleWorker = null;
+
+	/**
+	 * The estimated distance from the selected node to the node under the
+	 * mouse pointer, null if no tooltip is shown
+	 */
+	private String distanceTooltip = null;
+
 	/**
 	 * The color of the applets background
 	 */
@@ -179,6 +333,7 @@ public class Cobweb extends PApplet {
 	GCheckbox displayNamesBox = null;
 	GCheckbox displaySymbolsBox = null;
 	GCheckbox displayPicturesBox = null;
+	GCheckbox weightedPathBox = null;
 	GWSlider scaleSlider = null;
 	GButton fixButton = null;
 	GWSlider edgeLengthSlider = null;
@@ -207,14 +362,18 @@ public class Cobweb extends PApplet {
 	 * If two nodes are selected, connect them with an edge to each other
 	 */
 	public void addEdgeByButton () {
-		if (particleSys.numberOfSelectedNodes() == 1)
-			particleSys.makeEdge(particleSys.getSelectedNode(0), particleSys.getSelectedNode(0), 1.0f, null, null, null, edgeStrength, edgeStrength, edgeLength);
-		else if (particleSys.numberOfSelectedNodes() == 2)
-			particleSys.makeEdge(particleSys.getSelectedNode(0), particleSys.getSelectedNode(1), 1.0f, null, null, null, edgeStrength, edgeStrength, edgeLength);
-		else {
-			String[] args = new String[] { "Please select exactely two nodes (by selecting the source node and then keeping the CONTROL-key pressed while clicking on the target node)." };
-			callJavascriptFunction("show_warning", args);
-		}
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				if (particleSys.numberOfSelectedNodes() == 1)
+					particleSys.makeEdge(particleSys.getSelectedNode(0), particleSys.getSelectedNode(0), 1.0f, null, null, null, edgeStrength, edgeStrength, edgeLength);
+				else if (particleSys.numberOfSelectedNodes() == 2)
+					particleSys.makeEdge(particleSys.getSelectedNode(0), particleSys.getSelectedNode(1), 1.0f, null, null, null, edgeStrength, edgeStrength, edgeLength);
+				else {
+					String[] args = new String[] { "Please select exactely two nodes (by selecting the source node and then keeping the CONTROL-key pressed while clicking on the target node)." };
+					callJavascriptFunction("show_warning", args);
+				}
+			}
+		});
 	}
 
 	/**
@@ -237,71 +396,79 @@ public class Cobweb extends PApplet {
 	 * @param y
 	 *            The y coordinate where new nodes are added
 	 */
-	public void addNetwork (String network, float x, float y) {
-		callJavascriptFunctionStatusMessage("adding network", true);
+	public void addNetwork (final String network, final float x, final float y) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				callJavascriptFunctionStatusMessage("adding network", true);
 
-		if (networkType != null) {
-			if (networkType.equals("xgmml")) {
-				XGMMLParser parser = new XGMMLParser(this, network);
-				parser.setParameters(params);
+				if (networkType != null) {
+					if (networkType.equals("xgmml")) {
+						XGMMLParser parser = new XGMMLParser(Cobweb.this, network);
+						parser.setParameters(params);
 
-				if (fixed)
-					parser.parseNodes(particleSys, x, y, true);
-				else
-					parser.parseNodes(particleSys, x, y);
+						if (fixed)
+							parser.parseNodes(particleSys, x, y, true);
+						else
+							parser.parseNodes(particleSys, x, y);
 
-				parser.parseEdges(particleSys, edgeLength);
-			} else if (networkType.equals("graphml")) {
-				GraphMLParser parser = new GraphMLParser(this, network);
-				parser.setParameters(params);
+						parser.parseEdges(particleSys, edgeLength);
+					} else if (networkType.equals("graphml")) {
+						GraphMLParser parser = new GraphMLParser(Cobweb.this, network);
+						parser.setParameters(params);
 
-				if (fixed)
-					parser.parseNodes(particleSys, x, y, true);
-				else
-					parser.parseNodes(particleSys, x, y);
+						if (fixed)
+							parser.parseNodes(particleSys, x, y, true);
+						else
+							parser.parseNodes(particleSys, x, y);
 
-				parser.parseEdges(particleSys, edgeLength);
-			} else
-				System.out.println("unknown network type: " + networkType);
-		} else
-			System.out.println("no network type defined");
+						parser.parseEdges(particleSys, edgeLength);
+					} else
+						System.out.println("unknown network type: " + networkType);
+				} else
+					System.out.println("no network type defined");
 
-		System.out.println(network);
+				System.out.println(network);
 
-		callJavascriptFunctionStatusMessage("added network");
+				callJavascriptFunctionStatusMessage("added network");
+			}
+		});
 	}
 
 	/**
 	 * Add a new node with default values to the particle system
 	 */
 	public void addNodeByButton () {
-		String id = "new1";
-
-		for (int i = 1; i < MAX_INT; ++i)
-			if (!particleSys.containsNode("new" + i)) {
-				id = "new" + i;
-				break;
-			}
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				String id = "new1";
+
+				for (int i = 1; i < MAX_INT; ++i)
+					if (!particleSys.containsNode("new" + i)) {
+						id = "new" + i;
+						break;
+					}
 
-		String name = id;
+				String name = id;
 
-		Node n = particleSys.makeNode(id, name, null, null, params.getServerAdress() + params.getPicturePath(), null, null);
+				Node n = particleSys.makeNode(id, name, null, null, params.getServerAdress() + params.getPicturePath(), null, null);
 
-		if (n != null) {
-			for (int i = 0; i < particleSys.numberOfNodes(); ++i) {
-				Node q = particleSys.getNode(i);
-				if (n != q)
-					particleSys.makeRepulsion(n, q, repulsionStrength, 20);
-			}
+				if (n != null) {
+					for (int i = 0; i < particleSys.numberOfNodes(); ++i) {
+						Node q = particleSys.getNode(i);
+						if (n != q)
+							particleSys.makeRepulsion(n, q, repulsionStrength, 20);
+					}
 
-			Random random = new Random();
-			n.getPosition()
-					.set(width / 2 - translateMouseX + (random.nextFloat() * NODE_SIZE * 6 - NODE_SIZE * 3), height / 2 - translateMouseY + (random.nextFloat() * NODE_SIZE * 6 - NODE_SIZE * 3));
-			n.fix();
+					Random random = new Random();
+					n.getPosition().set(width / 2 - translateMouseX + (random.nextFloat() * NODE_SIZE * 6 - NODE_SIZE * 3),
+							height / 2 - translateMouseY + (random.nextFloat() * NODE_SIZE * 6 - NODE_SIZE * 3));
+					n.fix();
 
-			particleSys.deselectAllNodes();
-			selectNode(n);
-		}
+					particleSys.deselectAllNodes();
+					selectNode(n);
+				}
+			}
+		});
 	}
 
 	/**
@@ -310,12 +477,67 @@ public class Cobweb extends PApplet {
 	 * @param id
 	 *            The id of the node that is to be selected
 	 */
-	public void addNodeToSelectionById (String id) {
-		for (int i = 0; i < particleSys.numberOfNodes(); ++i)
-			if (particleSys.getNode(i).getId().equals(id)) {
-				selectNode(particleSys.getNode(i));
-				break;
+	public void addNodeToSelectionById (final String id) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				for (int i = 0; i < particleSys.numberOfNodes(); ++i)
+					if (particleSys.getNode(i).getId().equals(id)) {
+						selectNode(particleSys.getNode(i));
+						break;
+					}
+			}
+		});
+	}
+
+	/**
+	 * Let the thread of the particle system add the nodes and edges that were
+	 * read by the background loader since the last frame and report the
+	 * loading progress. When the loading is complete, the layout is computed
+	 * if requested and the network is fitted into the window
+	 */
+	void applyLoadedElements () {
+		final NetworkBuilder builder = loadingBuilder;
+
+		if (applyingLoadedElements)
+			return;
+
+		if (builder.isComplete()) {
+			loadingBuilder = null;
+
+			if (relaxAfterLoading) {
+				relaxAfterLoading = false;
+
+				if (builder.fix)
+					fixAfterSteps(builder, NetworkBuilder.FIX_STEPS);
+
+				callJavascriptFunctionStatusMessage("computing node positions", true);
+				relaxLayout();
+			}
+
+			fitNetworkInWindow();
+
+			if (backgroundLayout)
+				startLayoutThread();
+
+			callJavascriptFunctionStatusMessage("applet loaded");
+			callJavascriptFunctionClearSidebar();
+		} else {
+			applyingLoadedElements = true;
+			particleSys.invokeLater(new Runnable() {
+				public void run () {
+					try {
+						builder.applyBatches(LOADING_TIME_PER_FRAME);
+					} finally {
+						applyingLoadedElements = false;
+					}
+				}
+			});
+
+			if (millis() - lastLoadingMessage > 500) {
+				lastLoadingMessage = millis();
+				callJavascriptFunctionStatusMessage("loading network: " + particleSys.numberOfNodes() + " nodes and " + particleSys.numberOfEdges() + " edges loaded", true);
 			}
+		}
 	}
 
 	/**
@@ -383,6 +605,77 @@ public class Cobweb extends PApplet {
 		callJavascriptFunction("set_status_message", args);
 	}
 
+	/**
+	 * Cancel the layout job that is currently running, if any
+	 */
+	void cancelLayoutJob () {
+		if (layoutJob != null)
+			layoutJob.cancel();
+	}
+
+	/**
+	 * Fill the nodes with one color per community. The colors are spread
+	 * evenly over the hues, the largest communities get the most distinct
+	 * ones
+	 * 
+	 * @param c
+	 *            The communities
+	 */
+	void colorByCommunity (Communities c) {
+		for (int i = 0; i < c.community.length; ++i) {
+			float hue = (c.community[i] * 0.618034f) % 1f;
+			int rgb = Color.HSBtoRGB(hue, 0.55f, 0.9f) & 0xFFFFFF;
+			c.snapshot.getNode(i).setFillColor(String.format("#%06X", rgb));
+		}
+	}
+
+	/**
+	 * Start a background thread that computes the degree, closeness,
+	 * betweenness, PageRank and eigenvector centrality of the nodes. PageRank
+	 * and eigenvector centrality take the edge weights into account if the
+	 * edge weights checkbox is selected. When it has finished, the nodes with
+	 * the highest values are reported to the Javascript-function
+	 * show_centrality; all values can then be retrieved with
+	 * getCentralityAsString()
+	 * 
+	 * @param samples
+	 *            The number of randomly chosen source nodes the closeness and
+	 *            betweenness are estimated from, 0 for exact values
+	 */
+	public void computeCentrality (final int samples) {
+		final GraphSnapshot snapshot = particleSys.getSnapshot();
+		final boolean weighted = weightedPathBox.isSelected();
+		if (snapshot == null)
+			return;
+
+		// the same centralities were already computed for this version
+		Centrality cached = (Centrality) snapshot.getQueryCache().get(snapshot.getVersion(), "centrality", samples, weighted);
+		if (cached != null) {
+			reportCentrality(cached);
+			return;
+		}
+
+		callJavascriptFunctionStatusMessage("computing centralities", true);
+
+		Thread worker = new Thread(new Runnable() {
+			public void run () {
+				Centrality c = null;
+				try {
+					c = new Centrality(snapshot, samples, weighted);
+				} catch (InterruptedException e) {
+					callJavascriptFunctionStatusMessage("computing centralities interrupted");
+					return;
+				}
+				snapshot.getQueryCache().put(snapshot.getVersion(), c, snapshot.numberOfNodes(), "centrality", samples, weighted);
+
+				reportCentrality(c);
+				callJavascriptFunctionStatusMessage("computed centralities");
+			}
+		}, "Cobweb centrality");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
 	/**
 	 * Create the control elements (buttons and sliders) in the GUI
 	 */
@@ -458,6 +751,8 @@ public class Cobweb extends PApplet {
 		graphPanel.add(onePathButton);
 		allPathButton = new GButton(this, "Show all Paths  ", 236, 50, 103, 20);
 		graphPanel.add(allPathButton);
+		weightedPathBox = new GCheckbox(this, "Edge Weights", 236, 77, 103);
+		graphPanel.add(weightedPathBox);
 
 		GLabel manipulate = new GLabel(this, "Manipulate:", 346, 5, 95);
 		graphPanel.add(manipulate);
@@ -496,25 +791,34 @@ public class Cobweb extends PApplet {
 	 * @param amount
 	 *            How much the edge is shortened
 	 */
-	public void decreaseEdgeLength (String sourceId, String targetId, Float amount) {
-		for (int i = 0; i < particleSys.numberOfEdges(); ++i)
-			if (particleSys.getEdge(i).getSource().getId().equals(sourceId) && particleSys.getEdge(i).getTarget().getId().equals(targetId))
-				particleSys.getEdge(i).decreaseEdgeLength(amount);
+	public void decreaseEdgeLength (final String sourceId, final String targetId, final Float amount) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				for (int i = 0; i < particleSys.numberOfEdges(); ++i)
+					if (particleSys.getEdge(i).getSource().getId().equals(sourceId) && particleSys.getEdge(i).getTarget().getId().equals(targetId))
+						particleSys.getEdge(i).decreaseEdgeLength(amount);
+			}
+		});
 	}
 
 	/**
 	 * Remove the selected Edge
 	 */
 	public void deleteEdge () {
-		for (int i = 0; i < particleSys.numberOfEdges(); ++i)
-			if (particleSys.getEdge(i).isHighlighted()) {
-				particleSys.removeEdge(i);
-				break;
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				for (int i = 0; i < particleSys.numberOfEdges(); ++i)
+					if (particleSys.getEdge(i).isHighlighted()) {
+						particleSys.removeEdge(i);
+						break;
+					}
 			}
+		});
 	}
 
 	/**
-	 * Delete a given node
+	 * Delete a given node. Has to be called by the thread that runs the
+	 * particle system
 	 * 
 	 * @param n
 	 *            Node to be deleted
@@ -536,24 +840,72 @@ public class Cobweb extends PApplet {
 	 * @param id
 	 *            Id of the node to be deleted
 	 */
-	public void deleteNode (String id) {
-		Node n = particleSys.getNodeById(id);
+	public void deleteNode (final String id) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				Node n = particleSys.getNodeById(id);
 
-		if (n != null)
-			deleteNode(n);
+				if (n != null)
+					deleteNode(n);
+			}
+		});
 	}
 
 	/**
 	 * Delete all selected nodes
 	 */
 	public void deleteSelectedNodes () {
-		ArrayList<Node> removeNode = new ArrayList<Node>();
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				ArrayList<Node> removeNode = new ArrayList<Node>();
+
+				for (int i = 0; i < particleSys.numberOfSelectedNodes(); ++i)
+					removeNode.add(particleSys.getSelectedNode(i));
+
+				for (Iterator<Node> partIt = removeNode.iterator(); partIt.hasNext();)
+					deleteNode(partIt.next());
+			}
+		});
+	}
+
+	/**
+	 * Start a background thread that finds the communities of the network.
+	 * When it has finished, their number, modularity and sizes are reported
+	 * to the Javascript-function show_communities
+	 * 
+	 * @param color
+	 *            Whether the nodes are filled with one color per community
+	 * @param seed
+	 *            Whether each community is moved into a region of its own, so
+	 *            the layout starts from separated communities
+	 */
+	public void detectCommunities (final boolean color, final boolean seed) {
+		final GraphSnapshot snapshot = particleSys.getSnapshot();
+		if (snapshot == null)
+			return;
+
+		callJavascriptFunctionStatusMessage("detecting communities", true);
+
+		Thread worker = new Thread(new Runnable() {
+			public void run () {
+				final Communities c = new Communities(snapshot);
 
-		for (int i = 0; i < particleSys.numberOfSelectedNodes(); ++i)
-			removeNode.add(particleSys.getSelectedNode(i));
+				particleSys.invokeLater(new Runnable() {
+					public void run () {
+						if (color)
+							colorByCommunity(c);
+						if (seed)
+							placeCommunities(c);
+					}
+				});
 
-		for (Iterator<Node> partIt = removeNode.iterator(); partIt.hasNext();)
-			deleteNode(partIt.next());
+				String[] args = new String[] { String.valueOf(c.numberOfCommunities()), String.format("%.4f", c.modularity), formatComponentSizes(c.sizes.clone()) };
+				callJavascriptFunction("show_communities", args);
+				callJavascriptFunctionStatusMessage("detected " + c.numberOfCommunities() + " communities");
+			}
+		}, "Cobweb communities");
+		worker.setDaemon(true);
+		worker.start();
 	}
 
 	/**
@@ -580,7 +932,23 @@ public class Cobweb extends PApplet {
 	 */
 	public void draw () {
 		textFont(font);
-		particleSys.tick();
+
+		if (loadingBuilder != null)
+			applyLoadedElements();
+
+		if (layoutJob != null)
+			reportLayoutProgress();
+
+		if (reachability != null)
+			updateReachability();
+
+		if (distanceOracle != null)
+			updateDistanceOracle();
+
+		if (layoutThread == null && layoutJob == null) {
+			particleSys.tick();
+			particleSys.publishPositions();
+		}
 
 		background(backgroundColor);
 
@@ -590,8 +958,14 @@ public class Cobweb extends PApplet {
 		scale(scaleFactor);
 		translate(translateMouseX + translateZoomX, translateMouseY + translateZoomY);
 
-		drawEdges();
-		drawNodes();
+		PositionBuffer positions = particleSys.getPositionBuffer();
+		positions.acquire();
+		try {
+			drawEdges(positions);
+			drawNodes(positions);
+		} finally {
+			positions.release();
+		}
 
 		// draw selection frame
 		if (selectionFrame) {
@@ -603,6 +977,13 @@ public class Cobweb extends PApplet {
 		}
 
 		resetMatrix();
+
+		// draw the distance tooltip next to the mouse pointer
+		String tooltip = distanceTooltip;
+		if (tooltip != null) {
+			fill(textColor);
+			text(tooltip, mouseX + textWidth(tooltip) / 2 + 12, mouseY - 12);
+		}
 	}
 
 	/**
@@ -667,8 +1048,15 @@ public class Cobweb extends PApplet {
 
 	/**
 	 * Draw the edges of the network
+	 * 
+	 * @param positions
+	 *            The buffer holding the published node positions
 	 */
-	void drawEdges () {
+	void drawEdges (PositionBuffer positions) {
+		GraphStructure s = positions.getStructure();
+		if (s == null)
+			return;
+
 		Node a = null;
 		Node b = null;
 		Edge e = null;
@@ -679,23 +1067,23 @@ public class Cobweb extends PApplet {
 
 		noFill();
 
-		for (int i = particleSys.numberOfEdges() - 1; i >= 0; i--) {
-			e = particleSys.getEdge(i);
+		for (int i = s.numberOfEdges() - 1; i >= 0; i--) {
+			e = s.getEdge(i);
 			if (e.isVisible()) {
 				a = e.getSource();
 				b = e.getTarget();
 
-				ax = a.getPosition().getX();
-				ay = a.getPosition().getY();
-				bx = b.getPosition().getX();
-				by = b.getPosition().getY();
+				ax = positions.getX(s.getEdgeSource(i));
+				ay = positions.getY(s.getEdgeSource(i));
+				bx = positions.getX(s.getEdgeTarget(i));
+				by = positions.getY(s.getEdgeTarget(i));
 
 				strokeWeight(e.getStrokeWeight());
 
 				if (e.isHighlighted())
 					stroke(219, 139, 13);
 				else if (a.isHighlighted() || b.isHighlighted()) {
-					if (!particleSys.isDirected())
+					if (!s.isDirected())
 						stroke(219, 139, 13);
 					else {
 						if (a.isHighlighted())
@@ -715,8 +1103,8 @@ public class Cobweb extends PApplet {
 
 					drawEdgeEnding(ax, ay, bx, by, e.getShape());
 
-					if (!particleSys.isDirected())
-						drawEdgeEnding(b.getPosition().getX(), b.getPosition().getY(), a.getPosition().getX(), a.getPosition().getY(), e.getShape());
+					if (!s.isDirected())
+						drawEdgeEnding(bx, by, ax, ay, e.getShape());
 				}
 			}
 		}
@@ -726,8 +1114,15 @@ public class Cobweb extends PApplet {
 
 	/**
 	 * Draw the nodes of the network
+	 * 
+	 * @param positions
+	 *            The buffer holding the published node positions
 	 */
-	void drawNodes () {
+	void drawNodes (PositionBuffer positions) {
+		GraphStructure s = positions.getStructure();
+		if (s == null)
+			return;
+
 		int downShift = 4;
 		if (displayPicturesBox.isSelected())
 			downShift = 33;
@@ -739,31 +1134,35 @@ public class Cobweb extends PApplet {
 		stroke(200);
 
 		Node v = null;
-		for (int i = particleSys.numberOfNodes() - 1; i >= 0; i--) {
-			v = particleSys.getNode(i);
+		float x, y;
+		for (int i = s.numberOfNodes() - 1; i >= 0; i--) {
+			v = s.getNode(i);
 			if (v.isVisible()) {
+				x = positions.getX(i);
+				y = positions.getY(i);
+
 				if (v.isHighlighted()) {
 					noStroke();
 					fill(255, 255, 70, ALPHA);
-					ellipse(v.getPosition().getX(), v.getPosition().getY(), NODE_SIZE * 1.5f, NODE_SIZE * 1.5f);
+					ellipse(x, y, NODE_SIZE * v.getSize() * 1.5f, NODE_SIZE * v.getSize() * 1.5f);
 
 					stroke(219, 139, 13, ALPHA);
 					textSize(18);
 				}
 
 				if (drawSymbols)
-					drawSymbol(v.getPosition().getX(), v.getPosition().getY(), v.getShape(), v.getFillColor());
+					drawSymbol(x, y, v.getShape(), v.getFillColor(), NODE_SIZE * v.getSize());
 
 				if (drawImages) {
 					if (v.hasImage())
-						image(v.getImage(), v.getPosition().getX(), v.getPosition().getY());
+						image(v.getImage(), x, y);
 					else
-						drawSymbol(v.getPosition().getX(), v.getPosition().getY(), v.getShape(), v.getFillColor());
+						drawSymbol(x, y, v.getShape(), v.getFillColor(), NODE_SIZE * v.getSize());
 				}
 
 				if (drawNames) {
 					fill(textColor);
-					text(v.getName(), v.getPosition().getX(), v.getPosition().getY() + downShift);
+					text(v.getName(), x, y + downShift);
 				}
 
 				if (v.isHighlighted()) {
@@ -816,53 +1215,55 @@ public class Cobweb extends PApplet {
 	 *            the shape of the symbol
 	 * @param col
 	 *            Fill-color for the circle
+	 * @param size
+	 *            the size of the symbol
 	 */
-	void drawSymbol (float x, float y, int shape, int col) {
+	void drawSymbol (float x, float y, int shape, int col, float size) {
 		fill(col, ALPHA);
 
 		switch (shape) {
 			case 0: // circle
-				ellipse(x, y, NODE_SIZE, NODE_SIZE);
+				ellipse(x, y, size, size);
 				break;
 			case 1: // triangle
-				triangle(x, y - NODE_SIZE / 2, x + NODE_SIZE / 2, y + NODE_SIZE / 2, x - NODE_SIZE / 2, y + NODE_SIZE / 2);
+				triangle(x, y - size / 2, x + size / 2, y + size / 2, x - size / 2, y + size / 2);
 				break;
 			case 2: // box
-				rect(x, y, NODE_SIZE, NODE_SIZE);
+				rect(x, y, size, size);
 				break;
 			case 3: // rectangle
-				rect(x, y, NODE_SIZE, NODE_SIZE / 2);
+				rect(x, y, size, size / 2);
 				break;
 			case 4: // rhombus
-				quad(x - NODE_SIZE / 2, y - NODE_SIZE / 2, x, y - NODE_SIZE / 2, x + NODE_SIZE / 2, y + NODE_SIZE / 2, x, y + NODE_SIZE / 2);
+				quad(x - size / 2, y - size / 2, x, y - size / 2, x + size / 2, y + size / 2, x, y + size / 2);
 				break;
 			case 5: // hexagon
 				beginShape();
-				vertex(x - NODE_SIZE / 2, y);
-				vertex(x - NODE_SIZE / 4, y - NODE_SIZE / 2);
-				vertex(x + NODE_SIZE / 4, y - NODE_SIZE / 2);
-				vertex(x + NODE_SIZE / 2, y);
-				vertex(x + NODE_SIZE / 4, y + NODE_SIZE / 2);
-				vertex(x - NODE_SIZE / 4, y + NODE_SIZE / 2);
+				vertex(x - size / 2, y);
+				vertex(x - size / 4, y - size / 2);
+				vertex(x + size / 4, y - size / 2);
+				vertex(x + size / 2, y);
+				vertex(x + size / 4, y + size / 2);
+				vertex(x - size / 4, y + size / 2);
 				endShape(CLOSE);
 				break;
 			case 6: // octagon
 				beginShape();
-				vertex(x - NODE_SIZE / 2, y - NODE_SIZE / 4);
-				vertex(x - NODE_SIZE / 4, y - NODE_SIZE / 2);
-				vertex(x + NODE_SIZE / 4, y - NODE_SIZE / 2);
-				vertex(x + NODE_SIZE / 2, y - NODE_SIZE / 4);
-				vertex(x + NODE_SIZE / 2, y + NODE_SIZE / 4);
-				vertex(x + NODE_SIZE / 4, y + NODE_SIZE / 2);
-				vertex(x - NODE_SIZE / 4, y + NODE_SIZE / 2);
-				vertex(x - NODE_SIZE / 2, y + NODE_SIZE / 4);
+				vertex(x - size / 2, y - size / 4);
+				vertex(x - size / 4, y - size / 2);
+				vertex(x + size / 4, y - size / 2);
+				vertex(x + size / 2, y - size / 4);
+				vertex(x + size / 2, y + size / 4);
+				vertex(x + size / 4, y + size / 2);
+				vertex(x - size / 4, y + size / 2);
+				vertex(x - size / 2, y + size / 4);
 				endShape(CLOSE);
 				break;
 			case 7: // horizontal ellipsis
-				ellipse(x, y, NODE_SIZE, NODE_SIZE / 2);
+				ellipse(x, y, size, size / 2);
 				break;
 			case 8: // vertical ellipsis
-				ellipse(x, y, NODE_SIZE / 2, NODE_SIZE);
+				ellipse(x, y, size / 2, size);
 				break;
 		}
 	}
@@ -871,24 +1272,23 @@ public class Cobweb extends PApplet {
 	 * Scales and translates the view to make the network fit into the window
 	 */
 	public void fitNetworkInWindow () {
-		Node n = null;
+		GraphSnapshot s = particleSys.getSnapshot();
 		float xMin = MAX_FLOAT;
 		float xMax = MIN_FLOAT;
 		float yMin = MAX_FLOAT;
 		float yMax = MIN_FLOAT;
 
-		for (int i = 0; i < particleSys.numberOfNodes(); ++i) {
-			n = particleSys.getNode(i);
-			if (n.isVisible()) {
-				if (n.getPosition().getX() > xMax)
-					xMax = n.getPosition().getX();
-				if (n.getPosition().getX() < xMin)
-					xMin = n.getPosition().getX();
-
-				if (n.getPosition().getY() > yMax)
-					yMax = n.getPosition().getY();
-				if (n.getPosition().getY() < yMin)
-					yMin = n.getPosition().getY();
+		for (int i = 0; i < s.numberOfNodes(); ++i) {
+			if (s.getNode(i).isVisible()) {
+				if (s.getX(i) > xMax)
+					xMax = s.getX(i);
+				if (s.getX(i) < xMin)
+					xMin = s.getX(i);
+
+				if (s.getY(i) > yMax)
+					yMax = s.getY(i);
+				if (s.getY(i) < yMin)
+					yMin = s.getY(i);
 			}
 		}
 
@@ -910,25 +1310,111 @@ public class Cobweb extends PApplet {
 		}
 	}
 
+	/**
+	 * Fix the nodes created by the given builder after they were laid out for
+	 * the given number of steps of the particle system
+	 * 
+	 * @param builder
+	 *            The builder
+	 * @param steps
+	 *            The number of steps
+	 */
+	void fixAfterSteps (final NetworkBuilder builder, final int steps) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				if (steps > 0)
+					fixAfterSteps(builder, steps - 1);
+				else
+					builder.fixNewNodes();
+			}
+		});
+	}
+
 	/**
 	 * Fix all selected nodes
 	 */
 	public void fixSelectedNodePositions () {
-		if (selectedNode != null) // if one node is dragged at the moment, don't
-			// change its status but remember to change
-			// it after dragging has ended
-			selectedNodeFixed = !selectedNodeFixed;
-		else
-			// if no node is dragged
-			for (int i = 0; i < particleSys.numberOfSelectedNodes(); ++i) {
-				if (particleSys.getSelectedNode(i).isFixed()) {
-					particleSys.getSelectedNode(i).free();
-					callJavascriptFunctionStatusMessage("released node " + particleSys.getSelectedNode(i).getName());
-				} else {
-					particleSys.getSelectedNode(i).fix();
-					callJavascriptFunctionStatusMessage("fixed node " + particleSys.getSelectedNode(i).getName());
-				}
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				if (selectedNode != null) // if one node is dragged at the moment, don't
+					// change its status but remember to change
+					// it after dragging has ended
+					selectedNodeFixed = !selectedNodeFixed;
+				else
+					// if no node is dragged
+					for (int i = 0; i < particleSys.numberOfSelectedNodes(); ++i) {
+						if (particleSys.getSelectedNode(i).isFixed()) {
+							particleSys.getSelectedNode(i).free();
+							callJavascriptFunctionStatusMessage("released node " + particleSys.getSelectedNode(i).getName());
+						} else {
+							particleSys.getSelectedNode(i).fix();
+							callJavascriptFunctionStatusMessage("fixed node " + particleSys.getSelectedNode(i).getName());
+						}
+					}
 			}
+		});
+	}
+
+	/**
+	 * Return the given component sizes as a comma separated list, largest
+	 * first
+	 * 
+	 * @param sizes
+	 *            The component sizes, the array is sorted in place
+	 * @return The list of component sizes
+	 */
+	String formatComponentSizes (int[] sizes) {
+		Arrays.sort(sizes);
+
+		StringBuilder list = new StringBuilder();
+		for (int i = sizes.length - 1; i >= 0; --i) {
+			if (i < sizes.length - 1)
+				list.append(", ");
+			list.append(sizes[i]);
+		}
+
+		return list.toString();
+	}
+
+	/**
+	 * Return the bounds of a distance in a human readable form
+	 * 
+	 * @param bounds
+	 *            The lower and the upper bound as given by the distance oracle
+	 * @return The distance
+	 */
+	String formatDistance (int[] bounds) {
+		if (bounds[0] < 0)
+			return "not reachable";
+		if (bounds[0] == bounds[1])
+			return bounds[0] + (bounds[0] == 1 ? " step" : " steps");
+		if (bounds[1] == Integer.MAX_VALUE)
+			return "at least " + bounds[0] + " steps";
+
+		return bounds[0] + " to " + bounds[1] + " steps";
+	}
+
+	/**
+	 * Return the nodes with the largest values of a centrality measure and
+	 * their values
+	 * 
+	 * @param c
+	 *            The centralities
+	 * @param values
+	 *            The values of the measure
+	 * @return The nodes' names, each followed by its value in parentheses and
+	 *         separated by commas, ordered by decreasing value, or an empty
+	 *         string if there are no nodes
+	 */
+	String formatTopNodes (Centrality c, float[] values) {
+		StringBuilder list = new StringBuilder();
+		for (int i : Centrality.indicesOfLargest(values, REPORTED_NODES)) {
+			if (list.length() > 0)
+				list.append(", ");
+			list.append(c.snapshot.getNode(i).getName()).append(" (").append(values[i]).append(')');
+		}
+
+		return list.toString();
 	}
 
 	/**
@@ -940,6 +1426,48 @@ public class Cobweb extends PApplet {
 		return "#" + Integer.toHexString(backgroundColor).substring(2).toUpperCase();
 	}
 
+	/**
+	 * Return the values of a centrality measure that was computed last by
+	 * computeCentrality(), one node per line with its Id and value separated
+	 * by a tab
+	 * 
+	 * @param measure
+	 *            The measure: degree, closeness, betweenness, pagerank or
+	 *            eigenvector
+	 * @return The values or an empty string if the measure is unknown or was
+	 *         not computed yet
+	 */
+	public String getCentralityAsString (String measure) {
+		Centrality c = centrality;
+		if (c == null || c.get(measure) == null)
+			return "";
+
+		float[] values = c.get(measure);
+		StringBuilder list = new StringBuilder();
+		for (int i = 0; i < values.length; ++i)
+			list.append(c.snapshot.getNode(i).getId()).append('\t').append(values[i]).append('\n');
+
+		return list.toString();
+	}
+
+	/**
+	 * Return the coreness of the nodes, one node per line with its Id and
+	 * coreness separated by a tab. The coreness is the largest k for which
+	 * the node belongs to the k-core, in which every node has at least k
+	 * neighbours
+	 * 
+	 * @return The coreness of the nodes
+	 */
+	public String getCorenessAsString () {
+		CoreDecomposition c = GraphFunctions.coreDecomposition(particleSys.getSnapshot());
+
+		StringBuilder list = new StringBuilder();
+		for (int i = 0; i < c.coreness.length; ++i)
+			list.append(c.snapshot.getNode(i).getId()).append('\t').append(c.coreness[i]).append('\n');
+
+		return list.toString();
+	}
+
 	/**
 	 * Return the x-coordinate of the mouse-pointer
 	 * 
@@ -960,6 +1488,50 @@ public class Cobweb extends PApplet {
 		return (mouseY / scaleFactor - translateMouseY - translateZoomY);
 	}
 
+	/**
+	 * Return the address of the neighbourhood-script call that returns the
+	 * neighbourhood of the given node
+	 * 
+	 * @param n
+	 *            The node whose neighbourhood is requested
+	 * @return The address of the neighbourhood-script call
+	 */
+	String getNeighbourhoodAddress (Node n) {
+		return params.getServerAdress() + params.getNeighbourhoodScript() + "?id=" + n.getId();
+	}
+
+	/**
+	 * Return the exact number of steps from the node with the source id to
+	 * the node with the target id
+	 * 
+	 * @param sourceId
+	 *            The id of the source node
+	 * @param targetId
+	 *            The id of the target node
+	 * @return The distance or -1 if the target cannot be reached or one of the
+	 *         nodes does not exist
+	 */
+	public int getDistance (String sourceId, String targetId) {
+		DistanceOracle o = distanceOracle;
+		boolean current = o != null && o.snapshot.getVersion() == particleSys.getVersion();
+
+		// the ids are resolved in the snapshot that is queried
+		GraphSnapshot s = current ? o.snapshot : particleSys.getSnapshot();
+		int source = s.indexOf(sourceId);
+		int target = s.indexOf(targetId);
+		if (source < 0 || target < 0)
+			return -1;
+
+		if (current)
+			return o.distance(source, target);
+
+		if (source == target)
+			return 0;
+
+		ArrayList<Node> path = GraphFunctions.breadthFirstSearch(s, s.getNode(source), s.getNode(target));
+		return path.isEmpty() ? -1 : path.size();
+	}
+
 	/**
 	 * Return the edge on which the user has clicked, if any
 	 * 
@@ -975,23 +1547,33 @@ public class Cobweb extends PApplet {
 		float minDevSquared = 100;
 		float devSquared = 0;
 
-		for (int i = 0; i < particleSys.numberOfEdges(); ++i) {
-			e = particleSys.getEdge(i);
+		// the edges are read from the published structure, the lists of the
+		// particle system may be changed by its thread in the meantime
+		PositionBuffer positions = particleSys.getPositionBuffer();
+		positions.acquire();
+		try {
+			GraphStructure s = positions.getStructure();
 
-			if (!e.isVisible())
-				continue;
+			for (int i = 0; s != null && i < s.numberOfEdges(); ++i) {
+				e = s.getEdge(i);
 
-			if (e.getSource().equals(e.getTarget()))
-				devSquared = e.getDistanceToPoint(curX, curY, NODE_SIZE);
-			else
-				devSquared = e.getDistanceToPoint(curX, curY);
+				if (!e.isVisible())
+					continue;
 
-			if (devSquared < minDevSquared) {
-				minDevSquared = devSquared;
-				nearest = e;
-			}
+				if (e.getSource().equals(e.getTarget()))
+					devSquared = e.getDistanceToPoint(curX, curY, NODE_SIZE);
+				else
+					devSquared = e.getDistanceToPoint(curX, curY);
 
+				if (devSquared < minDevSquared) {
+					minDevSquared = devSquared;
+					nearest = e;
+				}
+			}
+		} finally {
+			positions.release();
 		}
+
 		return nearest;
 	}
 
@@ -1008,13 +1590,22 @@ public class Cobweb extends PApplet {
 		Node n = null;
 		float d = DISTANCE_CUTOFF;
 
-		for (int i = 0; i < particleSys.numberOfNodes(); ++i) {
-			Node v = particleSys.getNode(i);
-			float dTemp = distance(mx, my, v.getPosition().getX(), v.getPosition().getY());
-			if ((dTemp < d) && dTemp < DISTANCE_CUTOFF) {
-				d = dTemp;
-				n = v;
+		// the nodes are read from the published positions, the lists of the
+		// particle system may be changed by its thread in the meantime
+		PositionBuffer positions = particleSys.getPositionBuffer();
+		positions.acquire();
+		try {
+			GraphStructure s = positions.getStructure();
+
+			for (int i = 0; s != null && i < s.numberOfNodes(); ++i) {
+				float dTemp = distance(mx, my, positions.getX(i), positions.getY(i));
+				if ((dTemp < d) && dTemp < DISTANCE_CUTOFF) {
+					d = dTemp;
+					n = s.getNode(i);
+				}
 			}
+		} finally {
+			positions.release();
 		}
 
 		return n;
@@ -1036,6 +1627,8 @@ public class Cobweb extends PApplet {
 	 * @return The GraphML-string representing the current network
 	 */
 	public String getNetworkAsGraphMLString () {
+		GraphSnapshot snapshot = particleSys.getSnapshot();
+
 		String graphml = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n";
 
 		graphml += "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:schemaLocation=\"http://graphml.graphdrawing.org/xmlns http://graphml.graphdrawing.org/xmlns/1.0/graphml.xsd\">\n";
@@ -1058,15 +1651,19 @@ public class Cobweb extends PApplet {
 		graphml += "<key id=\"edgeg\" for=\"edge\" attr.name=\"g\" attr.type=\"string\" />\n";
 		graphml += "<key id=\"edgeb\" for=\"edge\" attr.name=\"b\" attr.type=\"string\" />\n";
 
-		graphml += "<graph id=\"" + params.getLabel() + "\" edgedefault=\"" + ((particleSys.isDirected()) ? "directed" : "undirected") + "\">\n";
+		graphml += "<graph id=\"" + params.getLabel() + "\" edgedefault=\"" + ((snapshot.isDirected()) ? "directed" : "undirected") + "\">\n";
 
 		graphml += params.toGraphML();
 
-		for (int i = 0; i < particleSys.numberOfNodes(); i++)
-			graphml += particleSys.getNode(i).toGraphML();
+		StringBuilder elements = new StringBuilder();
 
-		for (int i = 0; i < particleSys.numberOfEdges(); i++)
-			graphml += particleSys.getEdge(i).toGraphML();
+		for (int i = 0; i < snapshot.numberOfNodes(); i++)
+			elements.append(snapshot.getNode(i).toGraphML(snapshot.getX(i), snapshot.getY(i)));
+
+		for (int i = 0; i < snapshot.numberOfEdges(); i++)
+			elements.append(snapshot.getEdge(i).toGraphML());
+
+		graphml += elements;
 
 		graphml += "</graph>\n</graphml>\n";
 
@@ -1093,18 +1690,24 @@ public class Cobweb extends PApplet {
 	 * @return The XGMML-string representing the current network
 	 */
 	public String getNetworkAsXGMMLString () {
+		GraphSnapshot snapshot = particleSys.getSnapshot();
+
 		String xgmml = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n";
 
-		xgmml += "<graph label=\"" + params.getLabel() + "\" directed=\"" + ((particleSys.isDirected()) ? "1" : "0")
+		xgmml += "<graph label=\"" + params.getLabel() + "\" directed=\"" + ((snapshot.isDirected()) ? "1" : "0")
 				+ "\" xmlns=\"http://www.cs.rpi.edu/XGMML\" schemaLocation=\"http://www.cs.rpi.edu/~puninj/XGMML/xgmml.xsd\">\n";
 
 		xgmml += params.toXGMML();
 
-		for (int i = 0; i < particleSys.numberOfNodes(); i++)
-			xgmml += particleSys.getNode(i).toXGMML();
+		StringBuilder elements = new StringBuilder();
 
-		for (int i = 0; i < particleSys.numberOfEdges(); i++)
-			xgmml += particleSys.getEdge(i).toXGMML();
+		for (int i = 0; i < snapshot.numberOfNodes(); i++)
+			elements.append(snapshot.getNode(i).toXGMML(snapshot.getX(i), snapshot.getY(i)));
+
+		for (int i = 0; i < snapshot.numberOfEdges(); i++)
+			elements.append(snapshot.getEdge(i).toXGMML());
+
+		xgmml += elements;
 
 		xgmml += "</graph>\n";
 
@@ -1160,6 +1763,29 @@ public class Cobweb extends PApplet {
 		}
 	}
 
+	/**
+	 * Return the number of triangles each node belongs to and its local
+	 * clustering coefficient, one node per line with its Id, the number of
+	 * triangles and the coefficient separated by tabs
+	 * 
+	 * @return The triangles and clustering coefficients of the nodes
+	 */
+	public String getTrianglesAsString () {
+		Triangles t = null;
+		try {
+			t = GraphFunctions.triangles(particleSys.getSnapshot());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return "";
+		}
+
+		StringBuilder list = new StringBuilder();
+		for (int i = 0; i < t.triangles.length; ++i)
+			list.append(t.snapshot.getNode(i).getId()).append('\t').append(t.triangles[i]).append('\t').append(t.clustering[i]).append('\n');
+
+		return list.toString();
+	}
+
 	/**
 	 * Return the text color as a hexadecimal string
 	 * 
@@ -1178,13 +1804,17 @@ public class Cobweb extends PApplet {
 	public void handleButtonEvents (GButton button) {
 		if (!(displayPanel.isCollapsed() && graphPanel.isCollapsed())) {
 			if (button == fixButton && button.eventType == GButton.CLICKED) {
-				if (fixed) {
-					for (int i = 0; i < particleSys.numberOfNodes(); ++i)
-						particleSys.getNode(i).free();
-				} else {
-					for (int i = 0; i < particleSys.numberOfNodes(); ++i)
-						particleSys.getNode(i).fix();
-				}
+				final boolean free = fixed;
+				particleSys.invokeLater(new Runnable() {
+					public void run () {
+						for (int i = 0; i < particleSys.numberOfNodes(); ++i) {
+							if (free)
+								particleSys.getNode(i).free();
+							else
+								particleSys.getNode(i).fix();
+						}
+					}
+				});
 				fixed = !fixed;
 			} else if (button == smoothButton && button.eventType == GButton.CLICKED) {
 				if (smoothButton.getText().equals(SMOOTH_BUTTON_FASTER_TEXT)) {
@@ -1201,9 +1831,15 @@ public class Cobweb extends PApplet {
 			} else if (button == statisticsButton && button.eventType == GButton.CLICKED) {
 				showStatistics();
 			} else if (button == onePathButton && button.eventType == GButton.CLICKED) {
-				showOnePath();
+				if (weightedPathBox.isSelected())
+					showOneWeightedPath();
+				else
+					showOnePath();
 			} else if (button == allPathButton && button.eventType == GButton.CLICKED) {
-				showAllPath();
+				if (weightedPathBox.isSelected())
+					showAllWeightedPaths();
+				else
+					showAllPath();
 			} else if (button == invertButton && button.eventType == GButton.CLICKED) {
 				invertSelection();
 			} else if (button == addNodeButton && button.eventType == GButton.CLICKED) {
@@ -1211,18 +1847,29 @@ public class Cobweb extends PApplet {
 			} else if (button == addEdgeButton && button.eventType == GButton.CLICKED) {
 				addEdgeByButton();
 			} else if (button == shuffleButton && button.eventType == GButton.CLICKED) {
-				Random rand = new Random();
-				for (int i = 0; i < particleSys.numberOfNodes(); ++i) {
-					particleSys.getNode(i).free();
-					particleSys.getNode(i).setPosition(new Vector2D(rand.nextFloat() + width / 2 - translateMouseX, rand.nextFloat() + height / 2 - translateMouseY));
+				if (layoutJob != null)
+					cancelLayoutJob();
+				else {
+					// the nodes are moved by the first step of the layout job
+					final float centerX = width / 2 - translateMouseX;
+					final float centerY = height / 2 - translateMouseY;
+					particleSys.invokeLater(new Runnable() {
+						public void run () {
+							Random rand = new Random();
+							for (int i = 0; i < particleSys.numberOfNodes(); ++i) {
+								particleSys.getNode(i).free();
+								particleSys.getNode(i).setPosition(new Vector2D(rand.nextFloat() + centerX, rand.nextFloat() + centerY));
+							}
+						}
+					});
+
+					startLayoutJob(true);
 				}
-
-				for (int i = 0; i < 2000; ++i)
-					particleSys.tick();
-				fitNetworkInWindow();
 			} else if (button == relaxButton && button.eventType == GButton.CLICKED) {
-				for (int i = 0; i < 2000; ++i)
-					particleSys.tick();
+				if (layoutJob != null)
+					cancelLayoutJob();
+				else
+					startLayoutJob(false);
 			} else if (button == fitButton && button.eventType == GButton.CLICKED) {
 				fitNetworkInWindow();
 			}
@@ -1255,8 +1902,14 @@ public class Cobweb extends PApplet {
 				translateZoomY = height / scaleFactor / 2 - height / 2;
 			} else if (slider == edgeLengthSlider) {
 				edgeLength = slider.getValuef();
-				for (int i = 0; i < particleSys.numberOfEdges(); ++i)
-					particleSys.getEdge(i).setRestLength(edgeLength);
+
+				final float length = edgeLength;
+				particleSys.invokeLater(new Runnable() {
+					public void run () {
+						for (int i = 0; i < particleSys.numberOfEdges(); ++i)
+							particleSys.getEdge(i).setRestLength(length);
+					}
+				});
 			}
 		}
 	}
@@ -1284,33 +1937,121 @@ public class Cobweb extends PApplet {
 	 * @param amount
 	 *            How much the edge is elongated
 	 */
-	public void increaseEdgeLength (String sourceId, String targetId, Float amount) {
-		for (int i = 0; i < particleSys.numberOfEdges(); ++i)
-			if (particleSys.getEdge(i).getSource().getId().equals(sourceId) && particleSys.getEdge(i).getTarget().getId().equals(targetId))
-				particleSys.getEdge(i).increaseEdgeLength(amount);
+	public void increaseEdgeLength (final String sourceId, final String targetId, final Float amount) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				for (int i = 0; i < particleSys.numberOfEdges(); ++i)
+					if (particleSys.getEdge(i).getSource().getId().equals(sourceId) && particleSys.getEdge(i).getTarget().getId().equals(targetId))
+						particleSys.getEdge(i).increaseEdgeLength(amount);
+			}
+		});
 	}
 
 	/**
 	 * Invert the current selection of nodes
 	 */
 	public void invertSelection () {
-		Node n = null;
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				Node n = null;
+
+				ArrayList<Node> unselectedNodes = new ArrayList<Node>();
 
-		ArrayList<Node> unselectedNodes = new ArrayList<Node>();
+				for (int i = 0; i < particleSys.numberOfNodes(); i++) {
+					n = particleSys.getNode(i);
 
-		for (int i = 0; i < particleSys.numberOfNodes(); i++) {
-			n = particleSys.getNode(i);
+					if (n.isHighlighted())
+						particleSys.deselectNode(n);
+					else
+						unselectedNodes.add(n);
+				}
 
-			if (n.isHighlighted())
-				particleSys.deselectNode(n);
-			else
-				unselectedNodes.add(n);
+				callJavascriptFunctionClearSidebar();
+
+				for (int i = 0; i < unselectedNodes.size(); ++i)
+					selectNode(unselectedNodes.get(i));
+			}
+		});
+	}
+
+	/**
+	 * Hide all nodes except the neighbourhood of the selected nodes, so the
+	 * layout is computed for the neighbourhood alone. The neighbourhood is
+	 * computed in the background, only the nodes are hidden by the thread of
+	 * the particle system
+	 * 
+	 * @param depth
+	 *            The maximal number of steps from the nearest selected node
+	 * @param maxNodes
+	 *            The maximal number of nodes in the neighbourhood
+	 */
+	public void isolateNeighbourhood (final int depth, final int maxNodes) {
+		final ArrayList<Node> selected = particleSys.getSelectedNodes();
+		final GraphSnapshot snapshot = particleSys.getSnapshot();
+
+		if (selected.isEmpty()) {
+			String[] args = new String[] { "Please select at least one node." };
+			callJavascriptFunction("show_warning", args);
+			return;
 		}
 
-		callJavascriptFunctionClearSidebar();
+		callJavascriptFunctionStatusMessage("computing the neighbourhood", true);
+
+		Thread worker = new Thread(new Runnable() {
+			public void run () {
+				final Subgraph neighbourhood = GraphFunctions.neighbourhood(snapshot, selected, depth, maxNodes);
+
+				particleSys.invokeLater(new Runnable() {
+					public void run () {
+						for (int i = 0; i < particleSys.numberOfNodes(); ++i) {
+							Node n = particleSys.getNode(i);
+							if (neighbourhood.contains(n))
+								n.show();
+							else
+								n.hide();
+						}
+
+						for (int i = 0; i < particleSys.numberOfEdges(); ++i)
+							particleSys.getEdge(i).updateVisibility();
+
+						callJavascriptFunctionStatusMessage("showing " + neighbourhood.numberOfNodes() + " nodes and " + neighbourhood.numberOfEdges() + " edges");
+					}
+				});
+			}
+		}, "Cobweb neighbourhood");
+		worker.setDaemon(true);
+		worker.start();
+	}
 
-		for (int i = 0; i < unselectedNodes.size(); ++i)
-			selectNode(unselectedNodes.get(i));
+	/**
+	 * Return true if the node with the target id can be reached from the node
+	 * with the source id along the edges. The first query builds a
+	 * reachability index; until it is ready, and while it is rebuilt after a
+	 * change of the network, queries are answered by a breadth first search
+	 * 
+	 * @param sourceId
+	 *            The id of the source node
+	 * @param targetId
+	 *            The id of the target node
+	 * @return true if there is a path from the source to the target node,
+	 *         false if there is none or one of the nodes does not exist
+	 */
+	public boolean isReachable (String sourceId, String targetId) {
+		Reachability r = reachability;
+		if (r != null && r.snapshot.getVersion() == particleSys.getVersion())
+			return r.isReachable(sourceId, targetId);
+
+		updateReachability();
+
+		GraphSnapshot s = particleSys.getSnapshot();
+		int source = s.indexOf(sourceId);
+		int target = s.indexOf(targetId);
+		if (source < 0 || target < 0)
+			return false;
+		if (source == target)
+			return true;
+
+		return !GraphFunctions.breadthFirstSearch(s, s.getNode(source), s.getNode(target)).isEmpty();
 	}
 
 	/**
@@ -1330,23 +2071,43 @@ public class Cobweb extends PApplet {
 	 * @param n
 	 *            The node whose neighbourhood is to be loaded
 	 */
-	public void loadNeighbourhood (Node n) {
-		if (params.getNeighbourhoodScript() != null) {
-			this.setCursor(new Cursor(Cursor.WAIT_CURSOR));
-			callJavascriptFunctionStatusMessage("loading neighbourhood for " + n.getName(), true);
+	public void loadNeighbourhood (final Node n) {
+		if (params.getNeighbourhoodScript() == null)
+			return;
 
-			String lines[] = loadStrings(params.getServerAdress() + params.getNeighbourhoodScript() + "?id=" + n.getId());
-			StringBuffer stringBuf = new StringBuffer();
-			for (int i = 0; i < lines.length; i++)
-				stringBuf.append(lines[i]);
-			String content = stringBuf.toString();
+		this.setCursor(new Cursor(Cursor.WAIT_CURSOR));
+		callJavascriptFunctionStatusMessage("loading neighbourhood for " + n.getName(), true);
 
-			addNetwork(content, n.getPosition().getX(), n.getPosition().getY());
+		// the neighbourhood is downloaded and parsed by a background thread,
+		// only the insertion runs on the thread of the particle system
+		final NetworkBuilder builder = new NetworkBuilder(particleSys, params, n.getPosition().getX(), n.getPosition().getY(), edgeLength, fixed, true);
+		final String address = getNeighbourhoodAddress(n);
 
-			this.setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
+		Thread loader = new Thread(new Runnable() {
+			public void run () {
+				new NetworkLoader(Cobweb.this, address, networkType, builder, false).load();
+				builder.close();
 
-			callJavascriptFunctionStatusMessage("loaded neighbourhood for " + n.getName());
-		}
+				particleSys.invokeLater(new Runnable() {
+					public void run () {
+						builder.applyBatches(LOADING_TIME_PER_FRAME);
+
+						if (!builder.isComplete()) {
+							particleSys.invokeLater(this);
+							return;
+						}
+
+						if (builder.fix)
+							fixAfterSteps(builder, NetworkBuilder.FIX_STEPS);
+
+						setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
+						callJavascriptFunctionStatusMessage("loaded neighbourhood for " + n.getName());
+					}
+				});
+			}
+		}, "Cobweb neighbourhood loader");
+		loader.setDaemon(true);
+		loader.start();
 	}
 
 	/**
@@ -1356,11 +2117,15 @@ public class Cobweb extends PApplet {
 	 * @param id
 	 *            The id of the node whose neighbourhood is to be loaded
 	 */
-	public void loadNeighbourhood (String id) {
-		Node n = particleSys.getNodeById(id);
+	public void loadNeighbourhood (final String id) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				Node n = particleSys.getNodeById(id);
 
-		if (n != null)
-			loadNeighbourhood(n);
+				if (n != null)
+					loadNeighbourhood(n);
+			}
+		});
 	}
 
 	/**
@@ -1397,6 +2162,7 @@ public class Cobweb extends PApplet {
 	public void mouseDragged () {
 		if (mouseButton == LEFT) {
 			if (selectedNode != null) {
+				cancelLayoutJob();
 				cursor(CROSS);
 				selectedNode.getPosition().set(getMouseX(), getMouseY());
 			}
@@ -1408,7 +2174,8 @@ public class Cobweb extends PApplet {
 	}
 
 	/**
-	 * Make the panels transparent, if the mouse is not over them
+	 * Make the panels transparent, if the mouse is not over them, and show
+	 * the distance from the selected node to the node under the mouse pointer
 	 */
 	public void mouseMoved () {
 		if (displayPanel.isOverPanel(mouseX, mouseY)) {
@@ -1426,6 +2193,8 @@ public class Cobweb extends PApplet {
 			graphPanel.setAlpha(100);
 			graphPanel.setCollapsed(true);
 		}
+
+		updateDistanceTooltip();
 	}
 
 	/**
@@ -1437,31 +2206,38 @@ public class Cobweb extends PApplet {
 			return;
 
 		if (mouseButton == LEFT) {
-			for (int j = 0; j < particleSys.numberOfEdges(); j++)
-				particleSys.getEdge(j).dehighlight();
+			final boolean keepSelection = keyPressed && keyCode == CONTROL;
+			final Node pressedNode = getNearestNode();
+			final Edge pressedEdge = pressedNode == null ? getNearestEdge() : null;
 
-			if (!(keyPressed && keyCode == CONTROL))
-				particleSys.deselectAllNodes();
+			selectedNode = pressedNode;
 
-			selectedNode = getNearestNode();
-
-			if (selectedNode != null) {
-				selectedNodeFixed = selectedNode.isFixed();
-				selectedNode.fix();
-				selectNode(selectedNode);
+			if (pressedNode != null) {
+				selectedNodeFixed = pressedNode.isFixed();
+				pressedNode.fix();
 				cursor(CROSS);
-			} else {
-				Edge clickedEdge = getNearestEdge();
+			} else if (pressedEdge == null) {
+				origX = getMouseX();
+				origY = getMouseY();
+				selectionFrame = true;
+				callJavascriptFunctionClearSidebar();
+			}
 
-				if (clickedEdge != null) {
-					selectEdge(clickedEdge);
-				} else {
-					origX = getMouseX();
-					origY = getMouseY();
-					selectionFrame = true;
-					callJavascriptFunctionClearSidebar();
+			// the selection is changed by the thread of the particle system
+			particleSys.invokeLater(new Runnable() {
+				public void run () {
+					for (int j = 0; j < particleSys.numberOfEdges(); j++)
+						particleSys.getEdge(j).dehighlight();
+
+					if (!keepSelection)
+						particleSys.deselectAllNodes();
+
+					if (pressedNode != null)
+						selectNode(pressedNode);
+					else if (pressedEdge != null)
+						selectEdge(pressedEdge);
 				}
-			}
+			});
 		} else if (mouseButton == RIGHT || mouseButton == CENTER) {
 			cursor(MOVE);
 			origX = getMouseX();
@@ -1493,56 +2269,184 @@ public class Cobweb extends PApplet {
 	 */
 	public void mouseSingleClicked () {
 		if ((mouseButton == RIGHT) && mouseEvent.isShiftDown()) {
-			Node n = getNearestNode();
+			final Node n = getNearestNode();
+
+			if (n != null) {
+				particleSys.invokeLater(new Runnable() {
+					public void run () {
+						deleteNode(n);
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Move every community into a region of its own. The regions are squares
+	 * whose area grows with the size of the community; they are packed in
+	 * rows, largest first, around the center of the window. Inside its region
+	 * each node is placed at random
+	 * 
+	 * @param c
+	 *            The communities
+	 */
+	void placeCommunities (Communities c) {
+		int count = c.numberOfCommunities();
+		float[] side = new float[count];
+		float area = 0;
+		for (int k = 0; k < count; ++k) {
+			side[k] = edgeLength * (float) Math.ceil(Math.sqrt(c.sizes[k]));
+			area += side[k] * side[k];
+		}
+
+		// the communities are numbered by decreasing size
+		float rowWidth = (float) Math.sqrt(area);
+		float[] centerX = new float[count];
+		float[] centerY = new float[count];
+		float x = 0, y = 0, rowHeight = 0, maxX = 0;
+		for (int k = 0; k < count; ++k) {
+			if (x > 0 && x + side[k] > rowWidth) {
+				x = 0;
+				y += rowHeight;
+				rowHeight = 0;
+			}
+
+			centerX[k] = x + side[k] / 2;
+			centerY[k] = y + side[k] / 2;
+			x += side[k];
+			rowHeight = Math.max(rowHeight, side[k]);
+			maxX = Math.max(maxX, x);
+		}
+
+		float offsetX = width / 2 - translateMouseX - maxX / 2;
+		float offsetY = height / 2 - translateMouseY - (y + rowHeight) / 2;
 
-			if (n != null)
-				deleteNode(n);
+		Random rand = new Random();
+		for (int i = 0; i < c.community.length; ++i) {
+			int k = c.community[i];
+			Node n = c.snapshot.getNode(i);
+			n.free();
+			n.setPosition(new Vector2D(offsetX + centerX[k] + (rand.nextFloat() - 0.5f) * side[k] * 0.8f, offsetY + centerY[k] + (rand.nextFloat() - 0.5f) * side[k] * 0.8f));
 		}
 	}
 
 	/**
-	 * Change the selection to all neighbours of the currently selected nodes
+	 * Compute the layout until the layout time is used up or the layout has
+	 * converged and report the number of ticks and the remaining energy. The
+	 * layout thread is paused in the meantime
+	 * 
+	 * @return The number of ticks that were performed
 	 */
-	public void selectALLNeighboursOfSelectedNodes () {
-		if (particleSys.numberOfSelectedNodes() == 0) {
-			String[] args = new String[] { "Please select at least one node" };
-			callJavascriptFunction("show_warning", args);
+	public int relaxLayout () {
+		LayoutThread t = layoutThread;
+		if (t != null)
+			t.pause();
+
+		int ticks = 0;
+		try {
+			ticks = particleSys.relax(layoutTime, layoutEnergy);
+			particleSys.publishPositions();
+		} finally {
+			if (t != null)
+				t.proceed();
 		}
 
-		ArrayList<Node> neighbours = GraphFunctions.getAllNeighbours(particleSys);
+		callJavascriptFunctionStatusMessage("computed node positions in " + ticks + " steps, residual energy " + particleSys.getKineticEnergy());
 
-		particleSys.deselectAllNodes();
+		return ticks;
+	}
 
-		if (neighbours.isEmpty()) {
-			String[] args = new String[] { "No neighbours found." };
-			callJavascriptFunction("show_warning", args);
-		} else {
-			for (int i = 0; i < neighbours.size(); ++i)
-				particleSys.selectNode(neighbours.get(i));
+	/**
+	 * Make the given centralities the current ones and report the
+	 * REPORTED_NODES nodes with the highest values of each measure to the
+	 * Javascript-function show_centrality
+	 * 
+	 * @param c
+	 *            The centralities
+	 */
+	void reportCentrality (Centrality c) {
+		centrality = c;
+
+		String[] args = new String[] { formatTopNodes(c, c.degree), formatTopNodes(c, c.closeness), formatTopNodes(c, c.betweenness), String.valueOf(c.samples), formatTopNodes(c, c.pageRank), formatTopNodes(c, c.eigenvector) };
+		callJavascriptFunction("show_centrality", args);
+	}
+
+	/**
+	 * Report the progress of the current layout job. When the job has
+	 * finished, its result is reported and the job is discarded
+	 */
+	void reportLayoutProgress () {
+		if (layoutJob.isFinished()) {
+			if (layoutJob.isCancelled())
+				callJavascriptFunctionStatusMessage("computing node positions cancelled after " + layoutJob.getTicks() + " steps");
+			else {
+				callJavascriptFunctionStatusMessage("computed node positions in " + layoutJob.getTicks() + " steps, residual energy " + particleSys.getKineticEnergy());
+
+				if (fitAfterLayout)
+					fitNetworkInWindow();
+			}
+
+			layoutJob = null;
+
+			if (layoutThread != null)
+				layoutThread.proceed();
+		} else if (millis() - lastLayoutMessage > 500) {
+			lastLayoutMessage = millis();
+			callJavascriptFunctionStatusMessage("computing node positions: " + (int) (layoutJob.getProgress() * 100) + "%", true);
 		}
 	}
 
+	/**
+	 * Change the selection to all neighbours of the currently selected nodes
+	 */
+	public void selectALLNeighboursOfSelectedNodes () {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				if (particleSys.numberOfSelectedNodes() == 0) {
+					String[] args = new String[] { "Please select at least one node" };
+					callJavascriptFunction("show_warning", args);
+				}
+
+				ArrayList<Node> neighbours = GraphFunctions.getAllNeighbours(particleSys.getSnapshot(), particleSys.getSelectedNodes());
+
+				particleSys.deselectAllNodes();
+
+				if (neighbours.isEmpty()) {
+					String[] args = new String[] { "No neighbours found." };
+					callJavascriptFunction("show_warning", args);
+				} else {
+					for (int i = 0; i < neighbours.size(); ++i)
+						particleSys.selectNode(neighbours.get(i));
+				}
+			}
+		});
+	}
+
 	/**
 	 * Change the selection to the common neighbours of the currently selected
 	 * nodes
 	 */
 	public void selectCommonNeighboursOfSelectedNodes () {
-		if (particleSys.numberOfSelectedNodes() == 0) {
-			String[] args = new String[] { "Please select at least one node" };
-			callJavascriptFunction("show_warning", args);
-		}
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				if (particleSys.numberOfSelectedNodes() == 0) {
+					String[] args = new String[] { "Please select at least one node" };
+					callJavascriptFunction("show_warning", args);
+				}
 
-		ArrayList<Node> neighbours = GraphFunctions.getCommonNeighbours(particleSys);
+				ArrayList<Node> neighbours = GraphFunctions.getCommonNeighbours(particleSys.getSnapshot(), particleSys.getSelectedNodes());
 
-		particleSys.deselectAllNodes();
+				particleSys.deselectAllNodes();
 
-		if (neighbours.isEmpty()) {
-			String[] args = new String[] { "No common neighbours found." };
-			callJavascriptFunction("show_warning", args);
-		} else {
-			for (int i = 0; i < neighbours.size(); ++i)
-				particleSys.selectNode(neighbours.get(i));
-		}
+				if (neighbours.isEmpty()) {
+					String[] args = new String[] { "No common neighbours found." };
+					callJavascriptFunction("show_warning", args);
+				} else {
+					for (int i = 0; i < neighbours.size(); ++i)
+						particleSys.selectNode(neighbours.get(i));
+				}
+			}
+		});
 	}
 
 	/**
@@ -1561,6 +2465,31 @@ public class Cobweb extends PApplet {
 		callJavascriptFunction("show_edge_details", args);
 	}
 
+	/**
+	 * Add the neighbourhood of the selected nodes to the selection
+	 * 
+	 * @param depth
+	 *            The maximal number of steps from the nearest selected node
+	 * @param maxNodes
+	 *            The maximal number of nodes in the neighbourhood
+	 */
+	public void selectNeighbourhood (final int depth, final int maxNodes) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				if (particleSys.numberOfSelectedNodes() == 0) {
+					String[] args = new String[] { "Please select at least one node." };
+					callJavascriptFunction("show_warning", args);
+					return;
+				}
+
+				Subgraph neighbourhood = GraphFunctions.neighbourhood(particleSys.getSnapshot(), particleSys.getSelectedNodes(), depth, maxNodes);
+
+				for (int i = 0; i < neighbourhood.numberOfNodes(); ++i)
+					selectNode(neighbourhood.getNode(i));
+			}
+		});
+	}
+
 	/**
 	 * Select the given Node, i.e. highlight it and call a javascript-funtion
 	 * with details about the node
@@ -1602,14 +2531,18 @@ public class Cobweb extends PApplet {
 	 * @param id
 	 *            The id of the node that is to be selected
 	 */
-	public void selectNodeById (String id) {
-		particleSys.deselectAllNodes();
+	public void selectNodeById (final String id) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				particleSys.deselectAllNodes();
 
-		for (int i = 0; i < particleSys.numberOfNodes(); ++i)
-			if (particleSys.getNode(i).getId().equals(id)) {
-				selectNode(particleSys.getNode(i));
-				break;
+				for (int i = 0; i < particleSys.numberOfNodes(); ++i)
+					if (particleSys.getNode(i).getId().equals(id)) {
+						selectNode(particleSys.getNode(i));
+						break;
+					}
 			}
+		});
 	}
 
 	/**
@@ -1640,13 +2573,31 @@ public class Cobweb extends PApplet {
 			bottom = otherY;
 		}
 
-		Node n = null;
-		for (int i = 0; i < particleSys.numberOfNodes(); i++) {
-			n = particleSys.getNode(i);
-			if (left < n.getPosition().getX() && n.getPosition().getX() < right && top < n.getPosition().getY() && n.getPosition().getY() < bottom)
-				selectNode(n);
+		ArrayList<Node> framed = new ArrayList<Node>();
+
+		PositionBuffer positions = particleSys.getPositionBuffer();
+		positions.acquire();
+		try {
+			GraphStructure s = positions.getStructure();
+
+			for (int i = 0; s != null && i < s.numberOfNodes(); i++) {
+				float x = positions.getX(i);
+				float y = positions.getY(i);
+				if (left < x && x < right && top < y && y < bottom)
+					framed.add(s.getNode(i));
+			}
+		} finally {
+			positions.release();
 		}
 
+		final ArrayList<Node> selection = framed;
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				for (int i = 0; i < selection.size(); i++)
+					selectNode(selection.get(i));
+			}
+		});
+
 	}
 
 	/**
@@ -1656,27 +2607,84 @@ public class Cobweb extends PApplet {
 	 *            The name of the nodes that is to be selected. All nodes whose
 	 *            name start with the given string are selected.
 	 */
-	public void selectNodesByName (String name) {
-		int nameLength = name.length();
+	public void selectNodesByName (final String name) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				int nameLength = name.length();
 
-		if (nameLength == 0) {
-			particleSys.deselectAllNodes();
-			return;
-		}
+				if (nameLength == 0) {
+					particleSys.deselectAllNodes();
+					return;
+				}
 
-		Node n = null;
+				Node n = null;
+
+				particleSys.deselectAllNodes();
 
-		particleSys.deselectAllNodes();
+				for (int i = 0; i < particleSys.numberOfNodes(); i++) {
+					n = particleSys.getNode(i);
 
-		for (int i = 0; i < particleSys.numberOfNodes(); i++) {
-			n = particleSys.getNode(i);
+					if (n.getName().length() < nameLength)
+						continue;
 
-			if (n.getName().length() < nameLength)
-				continue;
+					if (particleSys.getNode(i).getName().substring(0, nameLength).equalsIgnoreCase(name))
+						selectNode(particleSys.getNode(i));
+				}
+			}
+		});
+	}
 
-			if (particleSys.getNode(i).getName().substring(0, nameLength).equalsIgnoreCase(name))
-				selectNode(particleSys.getNode(i));
+	/**
+	 * Select the nodes of a path that was found between the two selected
+	 * nodes, or warn if there is none. The selection is changed by the thread
+	 * that runs the particle system
+	 * 
+	 * @param path
+	 *            The nodes of the path
+	 */
+	void selectPath (final ArrayList<Node> path) {
+		if (path.size() == 0) {
+			String[] args = new String[] { "No path exist between the selected nodes." };
+			callJavascriptFunction("show_warning", args);
+			return;
 		}
+
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				for (int i = 0; i < path.size(); ++i)
+					selectNode(path.get(i));
+			}
+		});
+	}
+
+	/**
+	 * Select the nodes with the highest values of a centrality measure that
+	 * was computed last by computeCentrality(), so they are highlighted
+	 * 
+	 * @param measure
+	 *            The measure: degree, closeness, betweenness, pagerank or
+	 *            eigenvector
+	 * @param count
+	 *            The number of nodes that are to be selected
+	 */
+	public void selectTopNodes (final String measure, final int count) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				Centrality c = centrality;
+				float[] values = c == null ? null : c.get(measure);
+
+				if (values == null) {
+					String[] args = new String[] { "Please compute the centralities first." };
+					callJavascriptFunction("show_warning", args);
+					return;
+				}
+
+				particleSys.deselectAllNodes();
+
+				for (int i : Centrality.indicesOfLargest(values, count))
+					selectNode(c.snapshot.getNode(i));
+			}
+		});
 	}
 
 	/**
@@ -1701,16 +2709,20 @@ public class Cobweb extends PApplet {
 	 * @param a
 	 *            The annotation that is set
 	 */
-	public void setEdgeAnnotation (String a) {
-		try {
-			for (int i = 0; i < particleSys.numberOfEdges(); ++i)
-				if (particleSys.getEdge(i).isHighlighted()) {
-					particleSys.getEdge(i).setAnnotation(a);
-					break;
+	public void setEdgeAnnotation (final String a) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				try {
+					for (int i = 0; i < particleSys.numberOfEdges(); ++i)
+						if (particleSys.getEdge(i).isHighlighted()) {
+							particleSys.getEdge(i).setAnnotation(a);
+							break;
+						}
+				} catch (Exception e) {
+					e.printStackTrace();
 				}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+			}
+		});
 	}
 
 	/**
@@ -1719,16 +2731,20 @@ public class Cobweb extends PApplet {
 	 * @param c
 	 *            The color that is set
 	 */
-	public void setEdgeColor (String c) {
-		try {
-			for (int i = 0; i < particleSys.numberOfEdges(); ++i)
-				if (particleSys.getEdge(i).isHighlighted()) {
-					particleSys.getEdge(i).setColor(c);
-					break;
+	public void setEdgeColor (final String c) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				try {
+					for (int i = 0; i < particleSys.numberOfEdges(); ++i)
+						if (particleSys.getEdge(i).isHighlighted()) {
+							particleSys.getEdge(i).setColor(c);
+							break;
+						}
+				} catch (Exception e) {
+					e.printStackTrace();
 				}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+			}
+		});
 	}
 
 	/**
@@ -1737,41 +2753,49 @@ public class Cobweb extends PApplet {
 	 * @param s
 	 *            The shape that is set
 	 */
-	public void setEdgeShape (String s) {
-		try {
-			for (int i = 0; i < particleSys.numberOfEdges(); ++i)
-				if (particleSys.getEdge(i).isHighlighted()) {
-					particleSys.getEdge(i).setShape(Integer.parseInt(s));
-					break;
+	public void setEdgeShape (final String s) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				try {
+					for (int i = 0; i < particleSys.numberOfEdges(); ++i)
+						if (particleSys.getEdge(i).isHighlighted()) {
+							particleSys.getEdge(i).setShape(Integer.parseInt(s));
+							break;
+						}
+				} catch (Exception e) {
+					e.printStackTrace();
 				}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+			}
+		});
 	}
 
-	public void setEdgeStrength (String s) {
-		try {
-			float newStrength = Float.parseFloat(s);
+	public void setEdgeStrength (final String s) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				try {
+					float newStrength = Float.parseFloat(s);
 
-			if (newStrength > 1)
-				newStrength = 1;
-			else if (newStrength < 0.005)
-				newStrength = 0.005f;
+					if (newStrength > 1)
+						newStrength = 1;
+					else if (newStrength < 0.005)
+						newStrength = 0.005f;
 
-			Edge e = null;
-			float factor = 0;
+					Edge e = null;
+					float factor = 0;
 
-			for (int i = 0; i < particleSys.numberOfEdges(); i++) {
-				e = particleSys.getEdge(i);
-				factor = edgeStrength / e.getStrength();
-				e.setStrength(newStrength / factor);
-			}
+					for (int i = 0; i < particleSys.numberOfEdges(); i++) {
+						e = particleSys.getEdge(i);
+						factor = edgeStrength / e.getStrength();
+						e.setStrength(newStrength / factor);
+					}
 
-			edgeStrength = newStrength;
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+					edgeStrength = newStrength;
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
 
+			}
+		});
 	}
 
 	/**
@@ -1780,20 +2804,24 @@ public class Cobweb extends PApplet {
 	 * @param w
 	 *            The weight that is set
 	 */
-	public void setEdgeWeight (String w) {
-		try {
-			for (int i = 0; i < particleSys.numberOfEdges(); ++i)
-				if (particleSys.getEdge(i).isHighlighted()) {
-					try {
-						particleSys.getEdge(i).setWeight(Float.valueOf(w));
-					} catch (Exception e) {
-						particleSys.getEdge(i).setWeight(1.0f);
-					}
-					break;
+	public void setEdgeWeight (final String w) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				try {
+					for (int i = 0; i < particleSys.numberOfEdges(); ++i)
+						if (particleSys.getEdge(i).isHighlighted()) {
+							try {
+								particleSys.setEdgeWeight(particleSys.getEdge(i), Float.valueOf(w));
+							} catch (Exception e) {
+								particleSys.setEdgeWeight(particleSys.getEdge(i), 1.0f);
+							}
+							break;
+						}
+				} catch (Exception e) {
+					e.printStackTrace();
 				}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+			}
+		});
 	}
 
 	/**
@@ -1816,17 +2844,21 @@ public class Cobweb extends PApplet {
 	 * @param d
 	 *            The description that is set
 	 */
-	public void setNodeDescription (String d) {
-		try {
-			if (particleSys.numberOfSelectedNodes() == 1)
-				particleSys.getSelectedNode(0).setDescription(d);
-			else {
-				String[] args = new String[] { "Please select exactely one node." };
-				callJavascriptFunction("show_warning", args);
+	public void setNodeDescription (final String d) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				try {
+					if (particleSys.numberOfSelectedNodes() == 1)
+						particleSys.getSelectedNode(0).setDescription(d);
+					else {
+						String[] args = new String[] { "Please select exactely one node." };
+						callJavascriptFunction("show_warning", args);
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+		});
 	}
 
 	/**
@@ -1835,17 +2867,21 @@ public class Cobweb extends PApplet {
 	 * @param c
 	 *            The color that is set
 	 */
-	public void setNodeFillColor (String c) {
-		try {
-			if (particleSys.numberOfSelectedNodes() == 1)
-				particleSys.getSelectedNode(0).setFillColor(c);
-			else {
-				String[] args = new String[] { "Please select exactely one node." };
-				callJavascriptFunction("show_warning", args);
+	public void setNodeFillColor (final String c) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				try {
+					if (particleSys.numberOfSelectedNodes() == 1)
+						particleSys.getSelectedNode(0).setFillColor(c);
+					else {
+						String[] args = new String[] { "Please select exactely one node." };
+						callJavascriptFunction("show_warning", args);
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+		});
 	}
 
 	/**
@@ -1854,17 +2890,21 @@ public class Cobweb extends PApplet {
 	 * @param n
 	 *            The name that is set
 	 */
-	public void setNodeName (String n) {
-		try {
-			if (particleSys.numberOfSelectedNodes() == 1)
-				particleSys.getSelectedNode(0).setName(n);
-			else {
-				String[] args = new String[] { "Please select exactely one node." };
-				callJavascriptFunction("show_warning", args);
+	public void setNodeName (final String n) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				try {
+					if (particleSys.numberOfSelectedNodes() == 1)
+						particleSys.getSelectedNode(0).setName(n);
+					else {
+						String[] args = new String[] { "Please select exactely one node." };
+						callJavascriptFunction("show_warning", args);
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+		});
 	}
 
 	/**
@@ -1873,17 +2913,21 @@ public class Cobweb extends PApplet {
 	 * @param p
 	 *            The picture that is set
 	 */
-	public void setNodePicture (String p) {
-		try {
-			if (particleSys.numberOfSelectedNodes() == 1)
-				particleSys.getSelectedNode(0).setPicture(p, params.picturePath);
-			else {
-				String[] args = new String[] { "Please select exactely one node." };
-				callJavascriptFunction("show_warning", args);
+	public void setNodePicture (final String p) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				try {
+					if (particleSys.numberOfSelectedNodes() == 1)
+						particleSys.getSelectedNode(0).setPicture(p, params.picturePath);
+					else {
+						String[] args = new String[] { "Please select exactely one node." };
+						callJavascriptFunction("show_warning", args);
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+		});
 	}
 
 	/**
@@ -1892,17 +2936,21 @@ public class Cobweb extends PApplet {
 	 * @param s
 	 *            The shape that is set
 	 */
-	public void setNodeShape (String s) {
-		try {
-			if (particleSys.numberOfSelectedNodes() == 1)
-				particleSys.getSelectedNode(0).setShape(Integer.parseInt(s));
-			else {
-				String[] args = new String[] { "Please select exactely one node." };
-				callJavascriptFunction("show_warning", args);
+	public void setNodeShape (final String s) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				try {
+					if (particleSys.numberOfSelectedNodes() == 1)
+						particleSys.getSelectedNode(0).setShape(Integer.parseInt(s));
+					else {
+						String[] args = new String[] { "Please select exactely one node." };
+						callJavascriptFunction("show_warning", args);
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+		});
 	}
 
 	/**
@@ -1911,20 +2959,24 @@ public class Cobweb extends PApplet {
 	 * @param s
 	 *            The strength of repulsion forces
 	 */
-	public void setRepulsionStrength (String s) {
-		try {
-			repulsionStrength = Float.parseFloat(s);
-
-			if (repulsionStrength > 500000)
-				repulsionStrength = 500000;
-			else if (repulsionStrength < 0)
-				repulsionStrength = 0;
-
-			for (int i = 0; i < particleSys.numberOfRepulsions(); i++)
-				particleSys.getRepulsion(i).setStrength(repulsionStrength);
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
+	public void setRepulsionStrength (final String s) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				try {
+					repulsionStrength = Float.parseFloat(s);
+
+					if (repulsionStrength > 500000)
+						repulsionStrength = 500000;
+					else if (repulsionStrength < 0)
+						repulsionStrength = 0;
+
+					for (int i = 0; i < particleSys.numberOfRepulsions(); i++)
+						particleSys.getRepulsion(i).setStrength(repulsionStrength);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
 	}
 
 	/**
@@ -1970,6 +3022,38 @@ public class Cobweb extends PApplet {
 		else
 			repulsionStrength = 4000;
 
+		if (getParameter("layoutTime") != null)
+			layoutTime = Long.valueOf(getParameter("layoutTime"));
+		else
+			layoutTime = 2000;
+
+		if (getParameter("layoutEnergy") != null)
+			layoutEnergy = Float.valueOf(getParameter("layoutEnergy"));
+		else
+			layoutEnergy = 0.001f;
+
+		backgroundLayout = getParameter("backgroundLayout") != null && getParameter("backgroundLayout").equals("true");
+
+		if (getParameter("layoutRate") != null)
+			layoutRate = Integer.valueOf(getParameter("layoutRate"));
+		else
+			layoutRate = 60;
+
+		if (getParameter("centralitySamples") != null)
+			centralitySamples = Integer.valueOf(getParameter("centralitySamples"));
+		else
+			centralitySamples = 0;
+
+		if (getParameter("pathSamples") != null)
+			pathSamples = Integer.valueOf(getParameter("pathSamples"));
+		else
+			pathSamples = 0;
+
+		if (getParameter("landmarks") != null)
+			landmarks = Integer.valueOf(getParameter("landmarks"));
+		else
+			landmarks = 16;
+
 		size(Integer.valueOf(getParameter("width")), Integer.valueOf(getParameter("height")));
 		smooth();
 		strokeWeight(2);
@@ -2002,25 +3086,18 @@ public class Cobweb extends PApplet {
 		callJavascriptFunctionStatusMessage("parsing network data", true);
 
 		String network = null;
+		String networkFile = null;
 		if (getParameter("networkXGMML") != null) {
 			network = getParameter("networkXGMML");
 			networkType = "xgmml";
 		} else if (getParameter("fileXGMML") != null) {
-			String lines[] = loadStrings(serverAddress + getParameter("fileXGMML"));
-			StringBuffer stringBuf = new StringBuffer();
-			for (int i = 0; i < lines.length; i++)
-				stringBuf.append(lines[i]);
-			network = stringBuf.toString();
+			networkFile = serverAddress + getParameter("fileXGMML");
 			networkType = "xgmml";
 		} else if (getParameter("networkGraphML") != null) {
 			network = getParameter("networkGraphML");
 			networkType = "graphml";
 		} else if (getParameter("fileGraphML") != null) {
-			String lines[] = loadStrings(serverAddress + getParameter("fileGraphML"));
-			StringBuffer stringBuf = new StringBuffer();
-			for (int i = 0; i < lines.length; i++)
-				stringBuf.append(lines[i]);
-			network = stringBuf.toString();
+			networkFile = serverAddress + getParameter("fileGraphML");
 			networkType = "graphml";
 		} else if (getParameter("networkSIF") != null) {
 			network = getParameter("networkSIF");
@@ -2030,15 +3107,33 @@ public class Cobweb extends PApplet {
 			network = network.replace("<tab>", "\t");
 			networkType = "sif";
 		} else if (getParameter("fileSIF") != null) {
-			String lines[] = loadStrings(serverAddress + getParameter("fileSIF"));
-			StringBuffer stringBuf = new StringBuffer();
-			for (int i = 0; i < lines.length; i++)
-				stringBuf.append(lines[i] + "\n");
-			network = stringBuf.toString();
+			networkFile = serverAddress + getParameter("fileSIF");
 			networkType = "sif";
 		}
 
-		if (networkType != null) {
+		if (getParameter("progressiveLoading") != null && getParameter("progressiveLoading").equals("true")) {
+			// the network is read by a background thread and drawn while it is
+			// growing
+			params = new Parameters(this);
+			params.setServerAddress(serverAddress);
+
+			startLoader(network, networkFile);
+
+			if (backgroundLayout)
+				startLayoutThread();
+
+			callJavascriptFunctionStatusMessage("loading network", true);
+			return;
+		}
+
+		if (networkFile != null) {
+			// network files are parsed while they are downloaded
+			params = new Parameters(this);
+			params.setServerAddress(serverAddress);
+
+			NetworkBuilder builder = new NetworkBuilder(particleSys, params, width / 2f, height / 2f, edgeLength, false);
+			new NetworkLoader(this, networkFile, networkType, builder, true).load();
+		} else if (networkType != null) {
 			if (networkType.equals("xgmml")) {
 				XGMMLParser parser = new XGMMLParser(this, network);
 				parser.parseParameters(particleSys, serverAddress);
@@ -2062,104 +3157,503 @@ public class Cobweb extends PApplet {
 			System.out.println("no network type defined");
 
 		// if no edges are present in the starting network, neighbours for all
-		// nodes are loaded
-		if (particleSys.numberOfEdges() == 0) {
-			ArrayList<Node> n = new ArrayList<Node>();
-			for (int i = 0; i < particleSys.numberOfNodes(); i++)
-				n.add(particleSys.getNode(i));
-
-			for (Iterator<Node> nIt = n.iterator(); nIt.hasNext();)
-				loadNeighbourhood(nIt.next());
+		// nodes are loaded, the layout is computed when all of them were added
+		if (particleSys.numberOfEdges() == 0 && particleSys.numberOfNodes() > 0 && params.getNeighbourhoodScript() != null) {
+			startNeighbourhoodLoader(particleSys.getSnapshot());
+
+			callJavascriptFunctionStatusMessage("loading neighbourhoods", true);
+			return;
 		}
 
 		callJavascriptFunctionStatusMessage("computing node positions", true);
 
-		for (int i = 0; i < 2000; i++)
-			particleSys.tick();
+		relaxLayout();
 
 		fitNetworkInWindow();
 
+		if (backgroundLayout)
+			startLayoutThread();
+
 		callJavascriptFunctionStatusMessage("applet loaded");
 		callJavascriptFunctionClearSidebar();
 	}
 
+	/**
+	 * Show all nodes and edges that were hidden by isolateNeighbourhood() or
+	 * showCore()
+	 */
+	public void showAllNodes () {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				for (int i = 0; i < particleSys.numberOfNodes(); ++i)
+					particleSys.getNode(i).show();
+
+				for (int i = 0; i < particleSys.numberOfEdges(); ++i)
+					particleSys.getEdge(i).updateVisibility();
+			}
+		});
+	}
+
 	/**
 	 * If two node are selected, highlight all nodes that lie on all shortest
 	 * paths between the selected nodes
 	 */
 	public void showAllPath () {
-		if (particleSys.numberOfSelectedNodes() != 2) {
+		ArrayList<Node> selected = particleSys.getSelectedNodes();
+
+		if (selected.size() != 2) {
 			String[] args = new String[] { "Please select exactely two nodes." };
 			callJavascriptFunction("show_warning", args);
 		} else {
 			ArrayList<Node> path = new ArrayList<Node>();
+			GraphSnapshot snapshot = particleSys.getSnapshot();
 
-			path = GraphFunctions.breadthFirstSearchAllPaths(particleSys, particleSys.getSelectedNode(0), particleSys.getSelectedNode(1));
+			path = GraphFunctions.breadthFirstSearchAllPaths(snapshot, selected.get(0), selected.get(1));
 
-			if (particleSys.isDirected())
-				path.addAll(GraphFunctions.breadthFirstSearchAllPaths(particleSys, particleSys.getSelectedNode(1), particleSys.getSelectedNode(0)));
+			if (snapshot.isDirected())
+				path.addAll(GraphFunctions.breadthFirstSearchAllPaths(snapshot, selected.get(1), selected.get(0)));
 
-			if (path.size() == 0) {
-				String[] args = new String[] { "No path exist between the selected nodes." };
-				callJavascriptFunction("show_warning", args);
-			} else {
-				for (int i = 0; i < path.size(); ++i) {
-					selectNode(path.get(i));
-				}
-			}
+			selectPath(path);
 		}
 	}
 
+	/**
+	 * If two node are selected, highlight all nodes that lie on all shortest
+	 * paths between the selected nodes, using the edge weights as lengths
+	 */
+	public void showAllWeightedPaths () {
+		ArrayList<Node> selected = particleSys.getSelectedNodes();
+
+		if (selected.size() != 2) {
+			String[] args = new String[] { "Please select exactely two nodes." };
+			callJavascriptFunction("show_warning", args);
+		} else {
+			ArrayList<Node> path = new ArrayList<Node>();
+			GraphSnapshot snapshot = particleSys.getSnapshot();
+
+			path = GraphFunctions.dijkstraAllPaths(snapshot, selected.get(0), selected.get(1));
+
+			if (snapshot.isDirected())
+				path.addAll(GraphFunctions.dijkstraAllPaths(snapshot, selected.get(1), selected.get(0)));
+
+			selectPath(path);
+		}
+	}
+
+	/**
+	 * Hide all nodes outside the k-core, in which every node has at least k
+	 * neighbours. Hidden nodes are left out of the layout, so peeling a dense
+	 * network down to its core keeps the simulation fast. The cores are
+	 * computed in the background, only the nodes are hidden by the thread of
+	 * the particle system
+	 * 
+	 * @param k
+	 *            The minimal number of neighbours, 0 shows all nodes
+	 */
+	public void showCore (final int k) {
+		final GraphSnapshot snapshot = particleSys.getSnapshot();
+
+		callJavascriptFunctionStatusMessage("computing the " + k + "-core", true);
+
+		Thread worker = new Thread(new Runnable() {
+			public void run () {
+				final CoreDecomposition c = GraphFunctions.coreDecomposition(snapshot);
+
+				particleSys.invokeLater(new Runnable() {
+					public void run () {
+						for (int i = 0; i < c.coreness.length; ++i) {
+							Node n = c.snapshot.getNode(i);
+							if (c.coreness[i] >= k)
+								n.show();
+							else
+								n.hide();
+						}
+
+						for (int i = 0; i < particleSys.numberOfEdges(); ++i)
+							particleSys.getEdge(i).updateVisibility();
+
+						callJavascriptFunctionStatusMessage("showing the " + c.coreSize(k) + " nodes of the " + k + "-core, the largest core is the " + c.maxCore + "-core");
+					}
+				});
+			}
+		}, "Cobweb k-core");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
 	/**
 	 * If two node are selected, highlight all nodes that lie on one shortest
 	 * paths between the selected nodes
 	 */
 	public void showOnePath () {
-		if (particleSys.numberOfSelectedNodes() != 2) {
+		ArrayList<Node> selected = particleSys.getSelectedNodes();
+
+		if (selected.size() != 2) {
 			String[] args = new String[] { "Please select exactely two nodes (by selecting one node and then keeping the CONTROL-key pressed while clicking on the second one)." };
 			callJavascriptFunction("show_warning", args);
 		} else {
 			ArrayList<Node> path = new ArrayList<Node>();
+			GraphSnapshot snapshot = particleSys.getSnapshot();
 
-			path = GraphFunctions.breadthFirstSearch(particleSys, particleSys.getSelectedNode(0), particleSys.getSelectedNode(1));
+			path = GraphFunctions.breadthFirstSearch(snapshot, selected.get(0), selected.get(1));
 
-			if (particleSys.isDirected())
-				path.addAll(GraphFunctions.breadthFirstSearch(particleSys, particleSys.getSelectedNode(1), particleSys.getSelectedNode(0)));
+			if (snapshot.isDirected())
+				path.addAll(GraphFunctions.breadthFirstSearch(snapshot, selected.get(1), selected.get(0)));
 
-			if (path.size() == 0) {
-				String[] args = new String[] { "No path exist between the selected nodes." };
-				callJavascriptFunction("show_warning", args);
-			} else {
-				for (int i = 0; i < path.size(); ++i) {
-					selectNode(path.get(i));
-				}
-			}
+			selectPath(path);
 		}
 	}
 
 	/**
-	 * Get statistics about the network and show them in the sidebar
+	 * If two node are selected, highlight all nodes that lie on one shortest
+	 * paths between the selected nodes, using the edge weights as lengths
+	 */
+	public void showOneWeightedPath () {
+		ArrayList<Node> selected = particleSys.getSelectedNodes();
+
+		if (selected.size() != 2) {
+			String[] args = new String[] { "Please select exactely two nodes (by selecting one node and then keeping the CONTROL-key pressed while clicking on the second one)." };
+			callJavascriptFunction("show_warning", args);
+		} else {
+			ArrayList<Node> path = new ArrayList<Node>();
+			GraphSnapshot snapshot = particleSys.getSnapshot();
+
+			path = GraphFunctions.dijkstraOnePath(snapshot, selected.get(0), selected.get(1));
+
+			if (snapshot.isDirected())
+				path.addAll(GraphFunctions.dijkstraOnePath(snapshot, selected.get(1), selected.get(0)));
+
+			selectPath(path);
+		}
+	}
+
+	/**
+	 * Start a background thread that computes statistics about the network.
+	 * When it has finished, they are shown in the sidebar by the
+	 * Javascript-function show_statistics and the centralities are computed
 	 */
 	public void showStatistics () {
-		String numNodes = String.valueOf(particleSys.numberOfNodes());
-		String numEdges = String.valueOf(particleSys.numberOfEdges());
+		final GraphSnapshot snapshot = particleSys.getSnapshot();
+
+		final String numNodes = String.valueOf(snapshot.numberOfNodes());
+		final String numEdges = String.valueOf(snapshot.numberOfEdges());
 
 		// connected components
-		ArrayList<ArrayList<Node>> components = GraphFunctions.connectedComponents(particleSys);
-		String numComponents = String.valueOf(components.size());
-		ArrayList<Integer> componentSizesList = new ArrayList<Integer>();
-		for (int i = 0; i < components.size(); ++i)
-			componentSizesList.add(components.get(i).size());
-		Collections.sort(componentSizesList);
-		String componentSizes = "";
-		if (componentSizesList.size() > 0) {
-			componentSizes += componentSizesList.get(componentSizesList.size() - 1).toString();
-			for (int i = componentSizesList.size() - 2; i >= 0; --i)
-				componentSizes += ", " + componentSizesList.get(i).toString();
+		// the particle system keeps the components up to date
+		final String numComponents = String.valueOf(particleSys.numberOfComponents());
+		final String componentSizes = formatComponentSizes(particleSys.getComponentSizes());
+
+		// large networks are sampled unless the number of samples is given
+		final int samples = pathSamples == 0 && snapshot.numberOfNodes() > EXACT_PATH_NODES ? DEFAULT_PATH_SAMPLES : pathSamples;
+
+		callJavascriptFunctionStatusMessage("computing statistics", true);
+
+		Thread worker = new Thread(new Runnable() {
+			public void run () {
+				// strongly connected components, in undirected networks the
+				// same as the connected components
+				StrongComponents strong = GraphFunctions.strongComponents(snapshot);
+				String numStrongComponents = String.valueOf(strong.numberOfComponents());
+				String strongComponentSizes = formatComponentSizes(strong.sizes.clone());
+
+				// the largest k for which the k-core is not empty
+				String maxCore = String.valueOf(GraphFunctions.coreDecomposition(snapshot).maxCore);
+
+				// shortest paths, estimated from a sample of sources if
+				// requested
+				PathStatistics paths = (PathStatistics) snapshot.getQueryCache().get(snapshot.getVersion(), "pathStatistics", samples);
+				if (paths == null) {
+					try {
+						paths = new PathStatistics(snapshot, samples);
+					} catch (InterruptedException e) {
+						callJavascriptFunctionStatusMessage("computing statistics interrupted");
+						return;
+					}
+					snapshot.getQueryCache().put(snapshot.getVersion(), paths, snapshot.numberOfNodes(), "pathStatistics", samples);
+				}
+
+				String diameter = String.valueOf(paths.diameter);
+				if (paths.diameterBound > paths.diameter)
+					diameter += " - " + paths.diameterBound;
+				else if (paths.diameterBound == -1)
+					diameter = ">= " + diameter;
+
+				String averagePathLength = String.format("%.3f", paths.averagePathLength);
+				if (paths.averagePathLengthError > 0)
+					averagePathLength += String.format(" \u00b1 %.3f", paths.averagePathLengthError);
+
+				String eccentricities = paths.formatEccentricities();
+
+				// clustering coefficients from the triangles
+				Triangles triangles = null;
+				try {
+					triangles = GraphFunctions.triangles(snapshot);
+				} catch (InterruptedException e) {
+					callJavascriptFunctionStatusMessage("computing statistics interrupted");
+					return;
+				}
+				String globalClustering = String.format("%.4f", triangles.globalClustering);
+				String averageClustering = String.format("%.4f", triangles.averageClustering);
+
+				String[] args = new String[] { numNodes, numEdges, numComponents, componentSizes, diameter, averagePathLength, eccentricities, numStrongComponents, strongComponentSizes, maxCore, globalClustering, averageClustering };
+				callJavascriptFunction("show_statistics", args);
+				callJavascriptFunctionStatusMessage("computed statistics");
+
+				// the centralities take longer and are reported when they are
+				// ready
+				computeCentrality(centralitySamples);
+			}
+		}, "Cobweb statistics");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Scale the nodes' symbols by a centrality measure that was computed last
+	 * by computeCentrality(). The node with the largest value is drawn two
+	 * and a half times as large as a node with the value 0
+	 * 
+	 * @param measure
+	 *            The measure: degree, closeness, betweenness, pagerank or
+	 *            eigenvector; any other
+	 *            value resets the nodes to their normal size
+	 */
+	public void sizeNodesByCentrality (final String measure) {
+		particleSys.invokeLater(new Runnable() {
+			public void run () {
+				Centrality c = centrality;
+				float[] values = c == null ? null : c.get(measure);
+
+				for (int i = 0; i < particleSys.numberOfNodes(); ++i)
+					particleSys.getNode(i).setSize(1);
+
+				if (values == null)
+					return;
+
+				int i = Centrality.indexOfMaximum(values);
+				float max = i == -1 ? 0 : values[i];
+				if (max <= 0)
+					return;
+
+				for (i = 0; i < values.length; ++i)
+					c.snapshot.getNode(i).setSize(1 + 1.5f * values[i] / max);
+			}
+		});
+	}
+
+	/**
+	 * Start a background thread that reads the given network. Its nodes and
+	 * edges are added to the particle system in batches at the beginning of
+	 * each frame, so the network is drawn and laid out while it is loading. If
+	 * the network has no edges, the neighbourhoods of all its nodes are loaded
+	 * afterwards
+	 * 
+	 * @param network
+	 *            The network, if it was given as a parameter
+	 * @param networkFile
+	 *            The address of the network file, if the network is read from
+	 *            a file
+	 */
+	void startLoader (final String network, final String networkFile) {
+		final NetworkBuilder builder = new NetworkBuilder(particleSys, params, width / 2f, height / 2f, edgeLength, false, true);
+		loadingBuilder = builder;
+
+		Thread loader = new Thread(new Runnable() {
+			public void run () {
+				if (networkFile != null)
+					new NetworkLoader(Cobweb.this, networkFile, networkType, builder, true).load();
+				else if (network != null)
+					new NetworkLoader(Cobweb.this, null, networkType, builder, true).load(network);
+
+				if (builder.numberOfEdges() == 0 && params.getNeighbourhoodScript() != null) {
+					int numNodes = builder.numberOfNodes();
+
+					for (int i = 0; i < numNodes; ++i) {
+						Node n = builder.getNewNode(i);
+						builder.setOrigin(n.getPosition().getX(), n.getPosition().getY());
+						new NetworkLoader(Cobweb.this, getNeighbourhoodAddress(n), networkType, builder, false).load();
+					}
+				}
+
+				builder.close();
+			}
+		}, "Cobweb network loader");
+		loader.setDaemon(true);
+		loader.start();
+	}
+
+	/**
+	 * Start a background thread that loads the neighbourhoods of the nodes in
+	 * the given snapshot one after another. Like in startLoader() the nodes
+	 * and edges are added to the particle system at the beginning of each
+	 * frame. When all neighbourhoods were added, the layout is computed and
+	 * the network is fitted into the window
+	 * 
+	 * @param nodes
+	 *            The snapshot that holds the nodes
+	 */
+	void startNeighbourhoodLoader (final GraphSnapshot nodes) {
+		final NetworkBuilder builder = new NetworkBuilder(particleSys, params, width / 2f, height / 2f, edgeLength, fixed, true);
+		loadingBuilder = builder;
+		relaxAfterLoading = true;
+
+		Thread loader = new Thread(new Runnable() {
+			public void run () {
+				for (int i = 0; i < nodes.numberOfNodes(); ++i) {
+					builder.setOrigin(nodes.getX(i), nodes.getY(i));
+					new NetworkLoader(Cobweb.this, getNeighbourhoodAddress(nodes.getNode(i)), networkType, builder, false).load();
+				}
+
+				builder.close();
+			}
+		}, "Cobweb neighbourhood loader");
+		loader.setDaemon(true);
+		loader.start();
+	}
+
+	/**
+	 * Restart the thread that runs the particle system when the applet is
+	 * started again
+	 */
+	public void start () {
+		super.start();
+
+		if (backgroundLayout && particleSys != null)
+			startLayoutThread();
+	}
+
+	/**
+	 * Compute the layout on a worker thread while the network is drawn. A job
+	 * that is already running is cancelled
+	 * 
+	 * @param fit
+	 *            Whether the network is fitted into the window when the
+	 *            layout has converged
+	 */
+	void startLayoutJob (boolean fit) {
+		cancelLayoutJob();
+
+		fitAfterLayout = fit;
+		lastLayoutMessage = millis();
+
+		// the job runs the particle system on its own, the layout thread
+		// continues when the job has finished
+		if (layoutThread != null)
+			layoutThread.pause();
+
+		layoutJob = new LayoutJob(particleSys, layoutTime, layoutEnergy);
+		layoutJob.start();
+
+		callJavascriptFunctionStatusMessage("computing node positions", true);
+	}
+
+	/**
+	 * Start the thread that runs the particle system, from then on the
+	 * particle system is no longer updated once per frame
+	 */
+	void startLayoutThread () {
+		if (layoutThread != null)
+			return;
+
+		layoutThread = new LayoutThread(particleSys, layoutRate);
+		if (layoutJob != null)
+			layoutThread.pause();
+		layoutThread.start();
+	}
+
+	/**
+	 * Stop the thread that runs the particle system when the applet is stopped
+	 */
+	public void stop () {
+		if (layoutThread != null) {
+			layoutThread.shutdown();
+			layoutThread = null;
 		}
 
-		String[] args = new String[] { numNodes, numEdges, numComponents, componentSizes };
-		callJavascriptFunction("show_statistics", args);
+		super.stop();
+	}
+
+	/**
+	 * Start a background thread that builds the distance oracle for the
+	 * current version of the network, unless the oracle is up to date or
+	 * already being built
+	 */
+	synchronized void updateDistanceOracle () {
+		DistanceOracle o = distanceOracle;
+		if (distanceOracleWorker != null || (o != null && o.snapshot.getVersion() == particleSys.getVersion()))
+			return;
+
+		distanceOracleWorker = new Thread(new Runnable() {
+			public void run () {
+				try {
+					distanceOracle = new DistanceOracle(particleSys.getSnapshot(), landmarks);
+				} catch (InterruptedException e) {
+					// the next frame starts a new attempt
+				} finally {
+					synchronized (Cobweb.this) {
+						distanceOracleWorker = null;
+					}
+				}
+			}
+		}, "Cobweb distance oracle");
+		distanceOracleWorker.setDaemon(true);
+		distanceOracleWorker.start();
+	}
+
+	/**
+	 * Estimate the distance from the selected node to the node under the
+	 * mouse pointer for the tooltip. Only one node may be selected. The
+	 * estimate comes from the distance oracle; while it is built no tooltip
+	 * is shown
+	 */
+	void updateDistanceTooltip () {
+		distanceTooltip = null;
+
+		if (particleSys.numberOfSelectedNodes() != 1 || displayPanel.isOverPanel(mouseX, mouseY) || graphPanel.isOverPanel(mouseX, mouseY))
+			return;
+
+		ArrayList<Node> selected = particleSys.getSelectedNodes();
+		Node target = getNearestNode();
+		if (target == null || selected.size() != 1 || selected.get(0) == target)
+			return;
+
+		DistanceOracle o = distanceOracle;
+		if (o == null || o.snapshot.getVersion() != particleSys.getVersion()) {
+			updateDistanceOracle();
+			return;
+		}
+
+		int source = o.snapshot.indexOf(selected.get(0));
+		int sink = o.snapshot.indexOf(target);
+		if (source < 0 || sink < 0)
+			return;
+
+		distanceTooltip = formatDistance(o.bounds(source, sink));
+	}
+
+	/**
+	 * Start a background thread that builds the reachability index for the
+	 * current version of the network, unless the index is up to date or
+	 * already being built
+	 */
+	synchronized void updateReachability () {
+		Reachability r = reachability;
+		if (reachabilityWorker != null || (r != null && r.snapshot.getVersion() == particleSys.getVersion()))
+			return;
+
+		reachabilityWorker = new Thread(new Runnable() {
+			public void run () {
+				try {
+					reachability = GraphFunctions.reachability(particleSys.getSnapshot());
+				} finally {
+					synchronized (Cobweb.this) {
+						reachabilityWorker = null;
+					}
+				}
+			}
+		}, "Cobweb reachability");
+		reachabilityWorker.setDaemon(true);
+		reachabilityWorker.start();
 	}
 
 }
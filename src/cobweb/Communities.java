@@ -0,0 +1,438 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import particlesystem.GraphSnapshot;
+
+/**
+ * Communities of the nodes of a snapshot, found with the Louvain method.
+ * Each node starts in its own community. Nodes are moved to the neighbouring
+ * community that increases the modularity most until no move improves it;
+ * then every community is contracted into a single node and the moving
+ * starts again on the smaller network, until no two communities are merged
+ * any more. The edges count as undirected, each with weight 1; parallel
+ * edges add up.
+ * 
+ * All levels are stored in primitive arrays in compressed sparse row form,
+ * there are no objects per node or edge.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class Communities {
+	/**
+	 * The maximal number of passes over all nodes on one level, the moving
+	 * normally stops long before
+	 */
+	static final int MAX_PASSES = 100;
+
+	/**
+	 * The snapshot the communities were found in
+	 */
+	final GraphSnapshot snapshot;
+
+	/**
+	 * The community of each node, communities are numbered by decreasing size
+	 */
+	final int[] community;
+
+	/**
+	 * The number of nodes in each community
+	 */
+	final int[] sizes;
+
+	/**
+	 * The modularity of the communities
+	 */
+	final double modularity;
+
+	/**
+	 * Find the communities of the given snapshot
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 */
+	Communities (GraphSnapshot s) {
+		this.snapshot = s;
+
+		int n = s.numberOfNodes();
+		Random rand = new Random();
+
+		Level level = new Level(s);
+		community = new int[n];
+		for (int v = 0; v < n; ++v)
+			community[v] = v;
+
+		while (true) {
+			int[] membership = new int[level.n];
+			int count = level.moveNodes(membership, rand);
+			if (count == level.n)
+				break;
+
+			for (int v = 0; v < n; ++v)
+				community[v] = membership[community[v]];
+			level = level.aggregate(membership, count);
+		}
+		modularity = level.modularity();
+
+		// number the communities by decreasing size
+		int[] counts = new int[level.n];
+		for (int v = 0; v < n; ++v)
+			counts[community[v]]++;
+
+		long[] order = new long[level.n];
+		for (int c = 0; c < level.n; ++c)
+			order[c] = ((long) (n - counts[c]) << 32) | c;
+		Arrays.sort(order);
+
+		int[] rank = new int[level.n];
+		sizes = new int[level.n];
+		for (int i = 0; i < level.n; ++i) {
+			int c = (int) order[i];
+			rank[c] = i;
+			sizes[i] = counts[c];
+		}
+		for (int v = 0; v < n; ++v)
+			community[v] = rank[community[v]];
+	}
+
+	/**
+	 * Return the number of communities
+	 * 
+	 * @return The number of communities
+	 */
+	int numberOfCommunities () {
+		return sizes.length;
+	}
+
+	/**
+	 * One level of the Louvain method: a weighted undirected network whose
+	 * nodes are the communities of the level below
+	 */
+	private static class Level {
+		/**
+		 * The number of nodes
+		 */
+		final int n;
+
+		/**
+		 * The row offsets of the neighbours of each node, self-loops excluded
+		 */
+		final int[] offsets;
+
+		/**
+		 * The neighbours, every edge appears in the rows of both its nodes
+		 */
+		final int[] targets;
+
+		/**
+		 * The weight of each entry in the rows
+		 */
+		final double[] weights;
+
+		/**
+		 * The weight of the self-loop of each node
+		 */
+		final double[] self;
+
+		/**
+		 * The summed weight of the edges of each node, self-loops counted
+		 * twice
+		 */
+		final double[] strength;
+
+		/**
+		 * Twice the total weight of all edges
+		 */
+		final double total;
+
+		/**
+		 * Create the first level from a snapshot
+		 * 
+		 * @param s
+		 *            The snapshot of the network
+		 */
+		Level (GraphSnapshot s) {
+			n = s.numberOfNodes();
+			int m = s.numberOfEdges();
+
+			self = new double[n];
+			offsets = new int[n + 1];
+			for (int i = 0; i < m; ++i) {
+				int u = s.getEdgeSource(i);
+				int v = s.getEdgeTarget(i);
+				if (u == v)
+					self[u] += 1;
+				else {
+					offsets[u + 1]++;
+					offsets[v + 1]++;
+				}
+			}
+			for (int v = 0; v < n; ++v)
+				offsets[v + 1] += offsets[v];
+
+			targets = new int[offsets[n]];
+			weights = new double[offsets[n]];
+			int[] next = new int[n];
+			System.arraycopy(offsets, 0, next, 0, n);
+			for (int i = 0; i < m; ++i) {
+				int u = s.getEdgeSource(i);
+				int v = s.getEdgeTarget(i);
+				if (u != v) {
+					targets[next[u]] = v;
+					weights[next[u]++] = 1;
+					targets[next[v]] = u;
+					weights[next[v]++] = 1;
+				}
+			}
+
+			strength = new double[n];
+			total = computeStrength();
+		}
+
+		/**
+		 * Create a level from its arrays
+		 * 
+		 * @param n
+		 *            The number of nodes
+		 * @param offsets
+		 *            The row offsets of the neighbours of each node
+		 * @param targets
+		 *            The neighbours
+		 * @param weights
+		 *            The weight of each entry in the rows
+		 * @param self
+		 *            The weight of the self-loop of each node
+		 */
+		Level (int n, int[] offsets, int[] targets, double[] weights, double[] self) {
+			this.n = n;
+			this.offsets = offsets;
+			this.targets = targets;
+			this.weights = weights;
+			this.self = self;
+
+			strength = new double[n];
+			total = computeStrength();
+		}
+
+		/**
+		 * Contract every community into a single node. Edges between the
+		 * same communities are merged, edges within a community become its
+		 * self-loop
+		 * 
+		 * @param membership
+		 *            The community of each node
+		 * @param count
+		 *            The number of communities
+		 * @return The level of the communities
+		 */
+		Level aggregate (int[] membership, int count) {
+			// sort the nodes by community
+			int[] start = new int[count + 1];
+			for (int v = 0; v < n; ++v)
+				start[membership[v] + 1]++;
+			for (int c = 0; c < count; ++c)
+				start[c + 1] += start[c];
+			int[] members = new int[n];
+			int[] next = new int[count];
+			System.arraycopy(start, 0, next, 0, count);
+			for (int v = 0; v < n; ++v)
+				members[next[membership[v]]++] = v;
+
+			int[] newOffsets = new int[count + 1];
+			int[] newTargets = new int[targets.length];
+			double[] newWeights = new double[targets.length];
+			double[] newSelf = new double[count];
+
+			double[] linked = new double[count];
+			int[] linkedList = new int[count];
+			Arrays.fill(linked, -1);
+
+			int k = 0;
+			for (int c = 0; c < count; ++c) {
+				newOffsets[c] = k;
+				int found = 0;
+
+				for (int i = start[c]; i < start[c + 1]; ++i) {
+					int v = members[i];
+					newSelf[c] += self[v];
+
+					for (int j = offsets[v]; j < offsets[v + 1]; ++j) {
+						int d = membership[targets[j]];
+						// an edge within the community is seen from both ends
+						if (d == c)
+							newSelf[c] += weights[j] / 2;
+						else {
+							if (linked[d] < 0) {
+								linked[d] = 0;
+								linkedList[found++] = d;
+							}
+							linked[d] += weights[j];
+						}
+					}
+				}
+
+				for (int i = 0; i < found; ++i) {
+					int d = linkedList[i];
+					newTargets[k] = d;
+					newWeights[k++] = linked[d];
+					linked[d] = -1;
+				}
+			}
+			newOffsets[count] = k;
+
+			int[] targetsCopy = new int[k];
+			double[] weightsCopy = new double[k];
+			System.arraycopy(newTargets, 0, targetsCopy, 0, k);
+			System.arraycopy(newWeights, 0, weightsCopy, 0, k);
+
+			return new Level(count, newOffsets, targetsCopy, weightsCopy, newSelf);
+		}
+
+		/**
+		 * Compute the strength of every node
+		 * 
+		 * @return Twice the total weight of all edges
+		 */
+		private double computeStrength () {
+			double sum = 0;
+			for (int v = 0; v < n; ++v) {
+				strength[v] = 2 * self[v];
+				for (int k = offsets[v]; k < offsets[v + 1]; ++k)
+					strength[v] += weights[k];
+				sum += strength[v];
+			}
+
+			return sum;
+		}
+
+		/**
+		 * Return the modularity of the partition in which every node is a
+		 * community of its own
+		 * 
+		 * @return The modularity
+		 */
+		double modularity () {
+			if (total == 0)
+				return 0;
+
+			double q = 0;
+			for (int v = 0; v < n; ++v)
+				q += 2 * self[v] / total - (strength[v] / total) * (strength[v] / total);
+
+			return q;
+		}
+
+		/**
+		 * Move the nodes between communities in random order as long as the
+		 * modularity increases
+		 * 
+		 * @param membership
+		 *            Receives the community of each node, numbered from 0
+		 * @param rand
+		 *            The random number generator for the order of the nodes
+		 * @return The number of communities
+		 */
+		int moveNodes (int[] membership, Random rand) {
+			int[] order = new int[n];
+			double[] communityStrength = new double[n];
+			for (int v = 0; v < n; ++v) {
+				membership[v] = v;
+				order[v] = v;
+				communityStrength[v] = strength[v];
+			}
+			if (total == 0)
+				return n;
+
+			for (int i = n - 1; i > 0; --i) {
+				int j = rand.nextInt(i + 1);
+				int t = order[i];
+				order[i] = order[j];
+				order[j] = t;
+			}
+
+			double[] linked = new double[n];
+			int[] linkedList = new int[n];
+			Arrays.fill(linked, -1);
+
+			int moves;
+			int passes = 0;
+			do {
+				moves = 0;
+
+				for (int i = 0; i < n; ++i) {
+					int v = order[i];
+					int own = membership[v];
+
+					// the weights from the node to the neighbouring communities
+					int found = 0;
+					linked[own] = 0;
+					linkedList[found++] = own;
+					for (int k = offsets[v]; k < offsets[v + 1]; ++k) {
+						int c = membership[targets[k]];
+						if (linked[c] < 0) {
+							linked[c] = 0;
+							linkedList[found++] = c;
+						}
+						linked[c] += weights[k];
+					}
+
+					// the gain of joining a community, up to a constant factor
+					communityStrength[own] -= strength[v];
+					int best = own;
+					double bestGain = linked[own] - communityStrength[own] * strength[v] / total;
+					for (int j = 1; j < found; ++j) {
+						int c = linkedList[j];
+						double gain = linked[c] - communityStrength[c] * strength[v] / total;
+						if (gain > bestGain + 1e-12) {
+							best = c;
+							bestGain = gain;
+						}
+					}
+					communityStrength[best] += strength[v];
+
+					if (best != own) {
+						membership[v] = best;
+						++moves;
+					}
+
+					for (int j = 0; j < found; ++j)
+						linked[linkedList[j]] = -1;
+				}
+			} while (moves > 0 && ++passes < MAX_PASSES);
+
+			// number the communities from 0
+			int[] number = new int[n];
+			Arrays.fill(number, -1);
+			int count = 0;
+			for (int v = 0; v < n; ++v) {
+				if (number[membership[v]] == -1)
+					number[membership[v]] = count++;
+				membership[v] = number[membership[v]];
+			}
+
+			return count;
+		}
+	}
+}
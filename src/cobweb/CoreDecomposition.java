@@ -0,0 +1,154 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import particlesystem.Adjacency;
+import particlesystem.GraphSnapshot;
+
+/**
+ * The k-core decomposition of a snapshot. The k-core is the largest part of
+ * the network in which every node has at least k neighbours, the coreness of
+ * a node is the largest k for which it belongs to the k-core. Edge directions
+ * are ignored.
+ * 
+ * The nodes are kept in an array sorted by their remaining degree with the
+ * start of each degree bucket, so removing the node of lowest degree and
+ * decreasing the degree of its neighbours takes constant time per edge and
+ * the whole decomposition O(V + E) (Batagelj and Zaversnik).
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class CoreDecomposition {
+	/**
+	 * The snapshot that was decomposed
+	 */
+	final GraphSnapshot snapshot;
+
+	/**
+	 * The coreness of each node
+	 */
+	final int[] coreness;
+
+	/**
+	 * The largest coreness of all nodes, the degeneracy of the network
+	 */
+	final int maxCore;
+
+	/**
+	 * The number of nodes in the k-core for each k from 0 to maxCore
+	 */
+	private final int[] coreSizes;
+
+	/**
+	 * Decompose the given snapshot
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 */
+	CoreDecomposition (GraphSnapshot s) {
+		this.snapshot = s;
+
+		Adjacency a = s.getAdjacency();
+		int n = a.size();
+		int[] offsets = a.getOffsets();
+		int[] neighbours = a.getNeighbours();
+
+		// the degree without self-edges
+		int[] degree = new int[n];
+		int largest = 0;
+		for (int v = 0; v < n; ++v) {
+			for (int k = offsets[v]; k < offsets[v + 1]; ++k)
+				if (neighbours[k] != v)
+					degree[v]++;
+			largest = Math.max(largest, degree[v]);
+		}
+
+		// sort the nodes by degree, bucket[d] is the position of the first
+		// node of degree d
+		int[] bucket = new int[largest + 2];
+		for (int v = 0; v < n; ++v)
+			bucket[degree[v] + 1]++;
+		for (int d = 0; d <= largest; ++d)
+			bucket[d + 1] += bucket[d];
+
+		int[] sorted = new int[n];
+		int[] position = new int[n];
+		int[] next = bucket.clone();
+		for (int v = 0; v < n; ++v) {
+			position[v] = next[degree[v]]++;
+			sorted[position[v]] = v;
+		}
+
+		// remove the nodes in order of their remaining degree, which is then
+		// their coreness
+		for (int i = 0; i < n; ++i) {
+			int v = sorted[i];
+
+			for (int k = offsets[v]; k < offsets[v + 1]; ++k) {
+				int u = neighbours[k];
+				if (degree[u] <= degree[v])
+					continue;
+
+				// move u to the front of its bucket and the bucket boundary
+				// behind it, so u now belongs to the next lower degree
+				int d = degree[u];
+				int first = bucket[d];
+				int w = sorted[first];
+				if (w != u) {
+					sorted[position[u]] = w;
+					position[w] = position[u];
+					sorted[first] = u;
+					position[u] = first;
+				}
+				bucket[d]++;
+				degree[u]--;
+			}
+		}
+
+		coreness = degree;
+
+		int max = 0;
+		for (int v = 0; v < n; ++v)
+			max = Math.max(max, coreness[v]);
+		maxCore = max;
+
+		coreSizes = new int[maxCore + 1];
+		for (int v = 0; v < n; ++v)
+			coreSizes[coreness[v]]++;
+		for (int k = maxCore - 1; k >= 0; --k)
+			coreSizes[k] += coreSizes[k + 1];
+	}
+
+	/**
+	 * Return the number of nodes in the k-core
+	 * 
+	 * @param k
+	 *            The minimal number of neighbours
+	 * @return The number of nodes whose coreness is at least k
+	 */
+	int coreSize (int k) {
+		if (k > maxCore)
+			return 0;
+
+		return coreSizes[Math.max(k, 0)];
+	}
+}
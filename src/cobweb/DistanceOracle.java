@@ -0,0 +1,287 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import particlesystem.Adjacency;
+import particlesystem.GraphSnapshot;
+import particlesystem.Node;
+
+/**
+ * Estimates the number of steps between two nodes of a snapshot from their
+ * distances to a few landmark nodes. A breadth first search from each
+ * landmark, run in parallel, stores the distances from the landmark to every
+ * node and, in directed networks, from every node to the landmark in tables
+ * of shorts. By the triangle inequality the distance between two nodes lies
+ * between the differences and the sums of their landmark distances, so a
+ * query takes O(landmarks) and no search. The exact distance is only searched
+ * on demand.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class DistanceOracle {
+	/**
+	 * The table entry of nodes that are not connected to the landmark
+	 */
+	static final short UNREACHABLE = -1;
+
+	/**
+	 * The table entry of nodes that are too far from the landmark to store
+	 * the distance
+	 */
+	static final short FAR = Short.MAX_VALUE;
+
+	/**
+	 * The snapshot the oracle was built for
+	 */
+	final GraphSnapshot snapshot;
+
+	/**
+	 * The indices of the landmark nodes
+	 */
+	final int[] landmarks;
+
+	/**
+	 * The distance from each landmark to each node
+	 */
+	private final short[][] from;
+
+	/**
+	 * The distance from each node to each landmark, the same tables as from
+	 * in undirected networks
+	 */
+	private final short[][] to;
+
+	/**
+	 * Choose the landmarks and compute their distance tables
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param count
+	 *            The number of landmarks
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the
+	 *             searches
+	 */
+	DistanceOracle (GraphSnapshot s, int count) throws InterruptedException {
+		this.snapshot = s;
+
+		Adjacency a = s.getAdjacency();
+		landmarks = chooseLandmarks(a, count);
+
+		ArrayList<Search> searches = new ArrayList<Search>();
+		for (int l : landmarks)
+			searches.add(new Search(a.getSuccessorOffsets(), a.getSuccessors(), l));
+		if (a.isDirected())
+			for (int l : landmarks)
+				searches.add(new Search(a.getPredecessorOffsets(), a.getPredecessors(), l));
+
+		ArrayList<short[]> tables = Parallel.invokeAll(searches);
+		from = tables.subList(0, landmarks.length).toArray(new short[landmarks.length][]);
+		to = a.isDirected() ? tables.subList(landmarks.length, tables.size()).toArray(new short[landmarks.length][]) : from;
+	}
+
+	/**
+	 * Estimate the number of steps from the source to the target node
+	 * 
+	 * @param source
+	 *            The index of the source node
+	 * @param target
+	 *            The index of the target node
+	 * @return The lower and the upper bound of the distance. The upper bound
+	 *         is Integer.MAX_VALUE if no landmark gives one, both are -1 if
+	 *         the target cannot be reached
+	 */
+	int[] bounds (int source, int target) {
+		if (source == target)
+			return new int[] { 0, 0 };
+
+		int lower = 1;
+		int upper = Integer.MAX_VALUE;
+
+		for (int l = 0; l < landmarks.length; ++l) {
+			int ls = from[l][source];
+			int lt = from[l][target];
+			int sl = to[l][source];
+			int tl = to[l][target];
+
+			// a landmark that reaches the source but not the target, or
+			// that is reached by the target but not by the source, proves
+			// that there is no path
+			if ((ls != UNREACHABLE && lt == UNREACHABLE) || (tl != UNREACHABLE && sl == UNREACHABLE))
+				return new int[] { -1, -1 };
+
+			if (known(sl) && known(lt))
+				upper = Math.min(upper, sl + lt);
+			if (known(ls) && known(lt))
+				lower = Math.max(lower, lt - ls);
+			if (known(sl) && known(tl))
+				lower = Math.max(lower, sl - tl);
+		}
+
+		return new int[] { lower, upper };
+	}
+
+	/**
+	 * Choose the landmarks among the nodes with the most neighbours, skipping
+	 * neighbours of landmarks that were already chosen so the landmarks are
+	 * spread over the network
+	 * 
+	 * @param a
+	 *            The adjacency of the network
+	 * @param count
+	 *            The number of landmarks
+	 * @return The indices of the landmarks
+	 */
+	static int[] chooseLandmarks (Adjacency a, int count) {
+		int n = a.size();
+		int[] offsets = a.getOffsets();
+		int[] neighbours = a.getNeighbours();
+		count = Math.min(count, n);
+
+		// order the nodes by decreasing degree, ties by index
+		long[] order = new long[n];
+		for (int v = 0; v < n; ++v)
+			order[v] = ((long) (Integer.MAX_VALUE - (offsets[v + 1] - offsets[v])) << 32) | v;
+		Arrays.sort(order);
+
+		int[] chosen = new int[count];
+		boolean[] taken = new boolean[n];
+		boolean[] blocked = new boolean[n];
+		int k = 0;
+
+		for (int pass = 0; pass < 2 && k < count; ++pass) {
+			for (int i = 0; i < n && k < count; ++i) {
+				int v = (int) order[i];
+				if (taken[v] || (pass == 0 && blocked[v]))
+					continue;
+
+				taken[v] = true;
+				chosen[k++] = v;
+				for (int j = offsets[v]; j < offsets[v + 1]; ++j)
+					blocked[neighbours[j]] = true;
+			}
+		}
+
+		return chosen;
+	}
+
+	/**
+	 * Return the exact number of steps from the source to the target node.
+	 * Searches the network only if the landmarks do not already decide it
+	 * 
+	 * @param source
+	 *            The index of the source node
+	 * @param target
+	 *            The index of the target node
+	 * @return The distance or -1 if the target cannot be reached
+	 */
+	int distance (int source, int target) {
+		int[] bounds = bounds(source, target);
+		if (bounds[0] == bounds[1])
+			return bounds[0];
+
+		Node start = snapshot.getNode(source);
+		Node sink = snapshot.getNode(target);
+		// the path contains the nodes after the start node
+		ArrayList<Node> path = GraphFunctions.breadthFirstSearch(snapshot, start, sink);
+
+		return path.isEmpty() ? -1 : path.size();
+	}
+
+	/**
+	 * Return true if the table entry is a stored distance
+	 * 
+	 * @param d
+	 *            The table entry
+	 * @return true if the entry is neither UNREACHABLE nor FAR
+	 */
+	private static boolean known (int d) {
+		return d != UNREACHABLE && d != FAR;
+	}
+
+	/**
+	 * A breadth first search from one landmark that fills its distance table
+	 */
+	private static class Search implements Callable<short[]> {
+		/**
+		 * The row offsets of the adjacency that is followed
+		 */
+		final int[] offsets;
+
+		/**
+		 * The neighbours of the adjacency that is followed
+		 */
+		final int[] neighbours;
+
+		/**
+		 * The index of the landmark
+		 */
+		final int landmark;
+
+		/**
+		 * Create a search
+		 * 
+		 * @param offsets
+		 *            The row offsets of the adjacency that is followed
+		 * @param neighbours
+		 *            The neighbours of the adjacency that is followed
+		 * @param landmark
+		 *            The index of the landmark
+		 */
+		Search (int[] offsets, int[] neighbours, int landmark) {
+			this.offsets = offsets;
+			this.neighbours = neighbours;
+			this.landmark = landmark;
+		}
+
+		public short[] call () {
+			int n = offsets.length - 1;
+			short[] distance = new short[n];
+			Arrays.fill(distance, UNREACHABLE);
+
+			int[] queue = new int[n];
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = landmark;
+			distance[landmark] = 0;
+
+			while (head < tail) {
+				int v = queue[head++];
+				int d = distance[v] == FAR ? FAR : distance[v] + 1;
+
+				for (int k = offsets[v]; k < offsets[v + 1]; ++k) {
+					int w = neighbours[k];
+					if (distance[w] == UNREACHABLE) {
+						distance[w] = (short) Math.min(d, FAR);
+						queue[tail++] = w;
+					}
+				}
+			}
+
+			return distance;
+		}
+	}
+}
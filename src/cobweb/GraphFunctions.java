@@ -21,49 +21,91 @@
 package cobweb;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
 
-import particlesystem.Edge;
+import particlesystem.Adjacency;
 import particlesystem.Node;
-import particlesystem.ParticleSystem;
+import particlesystem.QueryCache;
+import particlesystem.UnionFind;
+import particlesystem.GraphSnapshot;
 
 /**
- * Graph functions to perform graph analysis like shortest path
+ * Graph functions to perform graph analysis like shortest path. The results
+ * of the path and neighbour queries are cached until the network changes
  * 
  * @author Joachim von Eichborn
  * @author http://bioinformatics.charite.de/cobweb
  */
 public class GraphFunctions {
+	/**
+	 * The number of nodes from which the power iterations run in parallel
+	 */
+	static final int PARALLEL_NODES = 10000;
 
 	/**
-	 * Return a list of nodes that lie on the path to the given node
+	 * Expand one complete level of a breadth first search that runs towards
+	 * another search from the opposite end
 	 * 
-	 * @param predecessor
-	 *            A list of predessors of nodes, generated by a breadth first
-	 *            search
-	 * @param curNode
-	 *            The node whose predecessors in the path are returned
-	 * @return The list of nodes on the path to the given node
+	 * @param queue
+	 *            The queue of the search, the current level lies between
+	 *            bounds[0] and bounds[1]
+	 * @param bounds
+	 *            Head and tail of the queue, updated to the next level
+	 * @param offsets
+	 *            The row offsets of the adjacency that is followed
+	 * @param adjacent
+	 *            The rows of the adjacency that is followed
+	 * @param parent
+	 *            The node each visited node was reached from, -1 for
+	 *            unvisited nodes
+	 * @param distance
+	 *            The distance of each visited node from the search's origin
+	 * @param otherDistance
+	 *            The distance of each node from the origin of the opposite
+	 *            search, -1 for nodes it has not visited
+	 * @param meeting
+	 *            Receives the node where the searches meet on the shortest
+	 *            path found in this level and the length of that path
 	 */
-	static ArrayList<Node> bfsGetPredecessor (HashMap<Node, ArrayList<Node>> predecessor, Node curNode) {
-		ArrayList<Node> path = new ArrayList<Node>();
+	static void bidirectionalLevel (int[] queue, int[] bounds, int[] offsets, int[] adjacent, int[] parent, int[] distance, int[] otherDistance, int[] meeting) {
+		int head = bounds[0];
+		int tail = bounds[1];
+		int end = tail;
+
+		while (head < end) {
+			int u = queue[head++];
 
-		path.add(curNode);
+			for (int k = offsets[u]; k < offsets[u + 1]; ++k) {
+				int v = adjacent[k];
 
-		if (predecessor.get(curNode) != null) {
-			for (int i = 0; i < predecessor.get(curNode).size(); ++i)
-				path.addAll(bfsGetPredecessor(predecessor, predecessor.get(curNode).get(i)));
+				if (parent[v] == -1) {
+					parent[v] = u;
+					distance[v] = distance[u] + 1;
+					queue[tail++] = v;
+				}
+
+				if (otherDistance[v] != -1) {
+					int length = distance[v] + otherDistance[v];
+					if (meeting[0] == -1 || length < meeting[1]) {
+						meeting[0] = v;
+						meeting[1] = length;
+					}
+				}
+			}
 		}
 
-		return path;
+		bounds[0] = head;
+		bounds[1] = tail;
 	}
 
 	/**
-	 * Find one shortest path between the start and sink node
+	 * Find one shortest path between the start and sink node. Two breadth
+	 * first searches run from both nodes towards each other, always expanding
+	 * the smaller frontier, and stop at the level in which they meet
 	 * 
-	 * @param ps
-	 *            The particle system
+	 * @param s
+	 *            The snapshot of the network
 	 * @param start
 	 *            The start node
 	 * @param sink
@@ -71,249 +113,1096 @@ public class GraphFunctions {
 	 * @return The list of nodes that are on one shortest path from the start
 	 *         node to the sink node
 	 */
-	static ArrayList<Node> breadthFirstSearch (ParticleSystem ps, Node start, Node sink) {
-
-		HashMap<Node, Integer> seen = new HashMap<Node, Integer>();
-		HashMap<Node, Node> predecessor = new HashMap<Node, Node>();
-		ArrayList<Node> queue = new ArrayList<Node>();
-
-		seen.put(start, 0);
-		predecessor.put(start, null);
-		queue.add(start);
-
-		while (!queue.isEmpty()) {
-			Node u = queue.get(0);
-			queue.remove(0);
-
-			for (int i = 0; i < ps.numberOfEdges(); ++i) {
-				Edge e = ps.getEdge(i);
-				if (e.getSource().equals(u)) {
-					if (!seen.containsKey(e.getTarget())) {
-						queue.add(e.getTarget());
-						seen.put(e.getTarget(), seen.get(e.getSource()) + 1);
-						predecessor.put(e.getTarget(), e.getSource());
-					}
-				}
-
-				if (!ps.isDirected()) {
-					if (e.getTarget().equals(u)) {
-						if (!seen.containsKey(e.getSource())) {
-							queue.add(e.getSource());
-							seen.put(e.getSource(), seen.get(e.getTarget()) + 1);
-							predecessor.put(e.getSource(), e.getTarget());
-						}
-					}
-				}
-			}
+	static ArrayList<Node> breadthFirstSearch (GraphSnapshot s, Node start, Node sink) {
+		Object[] key = new Object[] { "breadthFirstSearch", start.getId(), sink.getId() };
+		ArrayList<Node> result = s.getQueryCache().getNodes(s.getVersion(), key);
 
+		if (result == null) {
+			result = shortestPath(s, start, sink);
+			s.getQueryCache().putNodes(s.getVersion(), result, key);
 		}
 
+		return result;
+	}
+
+	/**
+	 * Compute the result of breadthFirstSearch() without the cache
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param start
+	 *            The start node
+	 * @param sink
+	 *            The sink node
+	 * @return The list of nodes that are on one shortest path from the start
+	 *         node to the sink node
+	 */
+	static ArrayList<Node> shortestPath (GraphSnapshot s, Node start, Node sink) {
 		ArrayList<Node> path = new ArrayList<Node>();
-		Node curNode = sink;
 
-		while (predecessor.get(curNode) != null) {
-			path.add(curNode);
-			curNode = predecessor.get(curNode);
+		int source = s.indexOf(start);
+		int target = s.indexOf(sink);
+		if (source < 0 || target < 0 || source == target)
+			return path;
+
+		Adjacency a = s.getAdjacency();
+		int n = a.size();
+
+		// forward search from the start node along the edges
+		int[] forwardParent = new int[n];
+		int[] forwardDistance = new int[n];
+		int[] forwardQueue = new int[n];
+		int[] forwardBounds = new int[] { 0, 1 };
+
+		// backward search from the sink node against the edges
+		int[] backwardParent = new int[n];
+		int[] backwardDistance = new int[n];
+		int[] backwardQueue = new int[n];
+		int[] backwardBounds = new int[] { 0, 1 };
+
+		Arrays.fill(forwardParent, -1);
+		Arrays.fill(forwardDistance, -1);
+		Arrays.fill(backwardParent, -1);
+		Arrays.fill(backwardDistance, -1);
+
+		forwardParent[source] = source;
+		forwardDistance[source] = 0;
+		forwardQueue[0] = source;
+
+		backwardParent[target] = target;
+		backwardDistance[target] = 0;
+		backwardQueue[0] = target;
+
+		int[] meeting = new int[] { -1, 0 };
+
+		while (meeting[0] == -1 && forwardBounds[0] < forwardBounds[1] && backwardBounds[0] < backwardBounds[1]) {
+			if (forwardBounds[1] - forwardBounds[0] <= backwardBounds[1] - backwardBounds[0])
+				bidirectionalLevel(forwardQueue, forwardBounds, a.getSuccessorOffsets(), a.getSuccessors(), forwardParent, forwardDistance, backwardDistance, meeting);
+			else
+				bidirectionalLevel(backwardQueue, backwardBounds, a.getPredecessorOffsets(), a.getPredecessors(), backwardParent, backwardDistance, forwardDistance, meeting);
 		}
 
+		if (meeting[0] == -1)
+			return path;
+
+		// the path is returned from the sink node back to the node after the
+		// start node
+		int m = meeting[0];
+		int[] nodes = new int[meeting[1]];
+
+		int pos = backwardDistance[m];
+		for (int v = m; v != source; v = forwardParent[v])
+			nodes[pos++] = v;
+
+		pos = backwardDistance[m] - 1;
+		for (int v = m; v != target; v = backwardParent[v])
+			nodes[pos--] = backwardParent[v];
+
+		for (int i = 0; i < nodes.length; ++i)
+			path.add(s.getNode(nodes[i]));
+
 		return path;
 	}
 
 	/**
-	 * Find all shortest path between the start and sink node
+	 * Find all shortest path between the start and sink node. A breadth first
+	 * search labels the nodes with their distance from the start node, then a
+	 * single backward sweep from the sink node marks every node that
+	 * precedes a marked node by exactly one step
 	 * 
-	 * @param ps
-	 *            The particle system
+	 * @param s
+	 *            The snapshot of the network
 	 * @param start
 	 *            The start node
 	 * @param sink
 	 *            The sink node
-	 * @return The list of nodes that are on all shortest paths from the start
-	 *         node to the sink node
+	 * @return The nodes that are on all shortest paths from the start node to
+	 *         the sink node, each node is contained once
 	 */
-	static ArrayList<Node> breadthFirstSearchAllPaths (ParticleSystem ps, Node start, Node sink) {
-
-		HashMap<Node, Integer> seen = new HashMap<Node, Integer>();
-		HashMap<Node, ArrayList<Node>> predecessor = new HashMap<Node, ArrayList<Node>>();
-		ArrayList<Node> queue = new ArrayList<Node>();
-
-		seen.put(start, 0);
-		predecessor.put(start, null);
-		queue.add(start);
-
-		while (!queue.isEmpty()) {
-			Node u = queue.get(0);
-			queue.remove(0);
-
-			for (int i = 0; i < ps.numberOfEdges(); ++i) {
-				Edge e = ps.getEdge(i);
-				if (e.getSource().equals(u)) {
-					if ((!seen.containsKey(e.getTarget())) || (seen.get(e.getTarget()) == seen.get(e.getSource()) + 1)) {
-						queue.add(e.getTarget());
-						seen.put(e.getTarget(), seen.get(e.getSource()) + 1);
-						if (predecessor.containsKey(e.getTarget()))
-							predecessor.get(e.getTarget()).add(e.getSource());
-						else {
-							ArrayList<Node> tmp = new ArrayList<Node>();
-							tmp.add(e.getSource());
-							predecessor.put(e.getTarget(), tmp);
-						}
-					}
+	static ArrayList<Node> breadthFirstSearchAllPaths (GraphSnapshot s, Node start, Node sink) {
+		Object[] key = new Object[] { "breadthFirstSearchAllPaths", start.getId(), sink.getId() };
+		ArrayList<Node> result = s.getQueryCache().getNodes(s.getVersion(), key);
+
+		if (result == null) {
+			result = allShortestPaths(s, start, sink);
+			s.getQueryCache().putNodes(s.getVersion(), result, key);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Compute the result of breadthFirstSearchAllPaths() without the cache
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param start
+	 *            The start node
+	 * @param sink
+	 *            The sink node
+	 * @return The nodes that are on all shortest paths from the start node to
+	 *         the sink node, each node is contained once
+	 */
+	static ArrayList<Node> allShortestPaths (GraphSnapshot s, Node start, Node sink) {
+		ArrayList<Node> path = new ArrayList<Node>();
+
+		int source = s.indexOf(start);
+		int target = s.indexOf(sink);
+		if (source < 0 || target < 0 || source == target)
+			return path;
+
+		Adjacency a = s.getAdjacency();
+		int[] offsets = a.getSuccessorOffsets();
+		int[] successors = a.getSuccessors();
+
+		// distance of each node from the start node, -1 for nodes that were
+		// not reached yet
+		int[] distance = new int[a.size()];
+		Arrays.fill(distance, -1);
+
+		int[] queue = new int[a.size()];
+		int head = 0;
+		int tail = 0;
+
+		distance[source] = 0;
+		queue[tail++] = source;
+
+		// nodes beyond the level of the sink node cannot be on a shortest path
+		while (head < tail && distance[target] == -1) {
+			int u = queue[head++];
+
+			for (int k = offsets[u]; k < offsets[u + 1]; ++k) {
+				int v = successors[k];
+				if (distance[v] == -1) {
+					distance[v] = distance[u] + 1;
+					queue[tail++] = v;
 				}
+			}
+		}
 
-				if (!ps.isDirected()) {
-					if (e.getTarget().equals(u)) {
-						if ((!seen.containsKey(e.getSource())) || (seen.get(e.getSource()) == seen.get(e.getTarget()) + 1)) {
-							queue.add(e.getSource());
-							seen.put(e.getSource(), seen.get(e.getTarget()) + 1);
-							if (predecessor.containsKey(e.getSource()))
-								predecessor.get(e.getSource()).add(e.getTarget());
-							else {
-								ArrayList<Node> tmp = new ArrayList<Node>();
-								tmp.add(e.getTarget());
-								predecessor.put(e.getSource(), tmp);
-							}
-						}
-					}
+		if (distance[target] == -1)
+			return path;
+
+		offsets = a.getPredecessorOffsets();
+		int[] predecessors = a.getPredecessors();
+
+		long[] onPath = new long[(a.size() + 63) >> 6];
+		int[] stack = queue;
+		int top = 0;
+
+		onPath[target >> 6] |= 1L << target;
+		stack[top++] = target;
+
+		while (top > 0) {
+			int v = stack[--top];
+			path.add(s.getNode(v));
+
+			for (int k = offsets[v]; k < offsets[v + 1]; ++k) {
+				int u = predecessors[k];
+
+				if (distance[u] != -1 && distance[u] == distance[v] - 1 && (onPath[u >> 6] & (1L << u)) == 0) {
+					onPath[u >> 6] |= 1L << u;
+					stack[top++] = u;
 				}
 			}
+		}
+
+		return path;
+	}
+
+
+	/**
+	 * Compute the weighted distances from the start node with Dijkstra's
+	 * algorithm. The weights of the edges are their lengths, negative weights
+	 * are treated as 0
+	 * 
+	 * @param a
+	 *            The adjacency of the network
+	 * @param source
+	 *            The index of the start node
+	 * @param target
+	 *            The index of a node after which the search may stop, -1 to
+	 *            compute the distances to all nodes
+	 * @param predecessor
+	 *            Receives the node each node was reached from on a shortest
+	 *            path, may be null
+	 * @return The distance of each node from the start node, infinity for
+	 *         nodes that were not reached
+	 */
+	static double[] dijkstra (Adjacency a, int source, int target, int[] predecessor) {
+		int n = a.size();
+		double[] distance = new double[n];
+		Arrays.fill(distance, Double.POSITIVE_INFINITY);
+		boolean[] settled = new boolean[n];
+
+		IndexedMinHeap heap = new IndexedMinHeap(n);
+
+		distance[source] = 0;
+		if (predecessor != null)
+			predecessor[source] = source;
+		heap.push(source, 0);
+
+		while (!heap.isEmpty()) {
+			int u = heap.poll();
+			settled[u] = true;
+
+			if (u == target)
+				break;
+
+			relaxEdges(a.getOutOffsets(), a.getOutNeighbours(), a.getOutWeights(), u, distance, settled, predecessor, heap);
+			if (!a.isDirected())
+				relaxEdges(a.getInOffsets(), a.getInNeighbours(), a.getInWeights(), u, distance, settled, predecessor, heap);
+		}
+
+		return distance;
+	}
+
+	/**
+	 * Find all shortest paths between the start and sink node, using the
+	 * weights of the edges as their lengths. The nodes on the paths are
+	 * collected by a single backward sweep from the sink node over the edges
+	 * that lie on a shortest path
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param start
+	 *            The start node
+	 * @param sink
+	 *            The sink node
+	 * @return The nodes that are on all weighted shortest paths from the start
+	 *         node to the sink node
+	 */
+	static ArrayList<Node> dijkstraAllPaths (GraphSnapshot s, Node start, Node sink) {
+		Object[] key = new Object[] { "dijkstraAllPaths", start.getId(), sink.getId() };
+		ArrayList<Node> result = s.getQueryCache().getNodes(s.getVersion(), key);
 
+		if (result == null) {
+			result = allWeightedShortestPaths(s, start, sink);
+			s.getQueryCache().putNodes(s.getVersion(), result, key);
 		}
 
+		return result;
+	}
+
+	/**
+	 * Compute the result of dijkstraAllPaths() without the cache
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param start
+	 *            The start node
+	 * @param sink
+	 *            The sink node
+	 * @return The nodes that are on all weighted shortest paths from the start
+	 *         node to the sink node
+	 */
+	static ArrayList<Node> allWeightedShortestPaths (GraphSnapshot s, Node start, Node sink) {
 		ArrayList<Node> path = new ArrayList<Node>();
-		Node curNode = sink;
 
-		if (predecessor.get(curNode) != null) {
-			path.add(curNode);
-			for (int i = 0; i < predecessor.get(curNode).size(); ++i)
-				path.addAll(bfsGetPredecessor(predecessor, predecessor.get(curNode).get(i)));
+		int source = s.indexOf(start);
+		int target = s.indexOf(sink);
+		if (source < 0 || target < 0 || source == target)
+			return path;
+
+		Adjacency a = s.getAdjacency();
+		double[] distance = dijkstra(a, source, -1, null);
+
+		if (Double.isInfinite(distance[target]))
+			return path;
+
+		long[] onPath = new long[(a.size() + 63) >> 6];
+		int[] stack = new int[a.size()];
+		int top = 0;
+
+		onPath[target >> 6] |= 1L << target;
+		stack[top++] = target;
+
+		while (top > 0) {
+			int v = stack[--top];
+			path.add(s.getNode(v));
+
+			top = sweepEdges(a.getInOffsets(), a.getInNeighbours(), a.getInWeights(), v, distance, onPath, stack, top);
+			if (!a.isDirected())
+				top = sweepEdges(a.getOutOffsets(), a.getOutNeighbours(), a.getOutWeights(), v, distance, onPath, stack, top);
 		}
 
 		return path;
 	}
 
 	/**
-	 * Return a list of lists of nodes, each list of nodes represents one
-	 * connected component
+	 * Find one shortest path between the start and sink node, using the
+	 * weights of the edges as their lengths
 	 * 
-	 * @param ps
-	 *            The particle system
-	 * @return The list of lists of nodes, each list of nodes represents one
-	 *         connected component
+	 * @param s
+	 *            The snapshot of the network
+	 * @param start
+	 *            The start node
+	 * @param sink
+	 *            The sink node
+	 * @return The list of nodes that are on one weighted shortest path from
+	 *         the start node to the sink node
 	 */
-	static ArrayList<ArrayList<Node>> connectedComponents (ParticleSystem ps) {
-		ArrayList<ArrayList<Node>> components = new ArrayList<ArrayList<Node>>();
+	static ArrayList<Node> dijkstraOnePath (GraphSnapshot s, Node start, Node sink) {
+		Object[] key = new Object[] { "dijkstraOnePath", start.getId(), sink.getId() };
+		ArrayList<Node> result = s.getQueryCache().getNodes(s.getVersion(), key);
 
-		for (int i = 0; i < ps.numberOfNodes(); ++i) {
-			ArrayList<Node> tmp = new ArrayList<Node>();
-			tmp.add(ps.getNode(i));
-			components.add(tmp);
+		if (result == null) {
+			result = weightedShortestPath(s, start, sink);
+			s.getQueryCache().putNodes(s.getVersion(), result, key);
 		}
 
-		for (int i = 0; i < ps.numberOfEdges(); ++i) {
-			int c1 = 0, c2 = 0;
+		return result;
+	}
 
-			for (int x = 0; x < components.size(); ++x)
-				if (components.get(x).contains(ps.getEdge(i).getSource())) {
-					c1 = x;
-					break;
-				}
+	/**
+	 * Compute the result of dijkstraOnePath() without the cache
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param start
+	 *            The start node
+	 * @param sink
+	 *            The sink node
+	 * @return The list of nodes that are on one weighted shortest path from
+	 *         the start node to the sink node
+	 */
+	static ArrayList<Node> weightedShortestPath (GraphSnapshot s, Node start, Node sink) {
+		ArrayList<Node> path = new ArrayList<Node>();
 
-			for (int y = 0; y < components.size(); ++y)
-				if (components.get(y).contains(ps.getEdge(i).getTarget())) {
-					c2 = y;
-					break;
-				}
+		int source = s.indexOf(start);
+		int target = s.indexOf(sink);
+		if (source < 0 || target < 0 || source == target)
+			return path;
+
+		Adjacency a = s.getAdjacency();
+		int[] predecessor = new int[a.size()];
+		double[] distance = dijkstra(a, source, target, predecessor);
+
+		if (Double.isInfinite(distance[target]))
+			return path;
 
-			if (c1 != c2) {
-				components.get(c1).addAll(components.get(c2));
-				components.remove(c2);
+		for (int v = target; v != source; v = predecessor[v])
+			path.add(s.getNode(v));
+
+		return path;
+	}
+
+	/**
+	 * Return true if the given distances differ only by rounding errors
+	 * 
+	 * @param a
+	 *            The first distance
+	 * @param b
+	 *            The second distance
+	 * @return true if the distances are regarded as equal
+	 */
+	static boolean equalDistance (double a, double b) {
+		return Math.abs(a - b) <= 1e-6 * Math.max(1, Math.abs(b));
+	}
+
+	/**
+	 * Relax the edges in one row of the adjacency during Dijkstra's algorithm
+	 * 
+	 * @param offsets
+	 *            The row offsets
+	 * @param neighbours
+	 *            The neighbours in the rows
+	 * @param weights
+	 *            The edge weights in the rows
+	 * @param u
+	 *            The node whose row is relaxed
+	 * @param distance
+	 *            The tentative distances
+	 * @param settled
+	 *            Whether the distance of a node is final
+	 * @param predecessor
+	 *            The node each node was reached from, may be null
+	 * @param heap
+	 *            The heap of the nodes with tentative distances
+	 */
+	static void relaxEdges (int[] offsets, int[] neighbours, float[] weights, int u, double[] distance, boolean[] settled, int[] predecessor, IndexedMinHeap heap) {
+		for (int k = offsets[u]; k < offsets[u + 1]; ++k) {
+			int v = neighbours[k];
+			if (settled[v])
+				continue;
+
+			double d = distance[u] + Math.max(0, weights[k]);
+			if (d < distance[v]) {
+				distance[v] = d;
+				if (predecessor != null)
+					predecessor[v] = u;
+				heap.push(v, d);
 			}
 		}
+	}
+
+	/**
+	 * Mark the nodes in one row of the adjacency that precede the given node
+	 * on a shortest path and push them on the stack
+	 * 
+	 * @param offsets
+	 *            The row offsets
+	 * @param neighbours
+	 *            The neighbours in the rows
+	 * @param weights
+	 *            The edge weights in the rows
+	 * @param v
+	 *            The node on a shortest path
+	 * @param distance
+	 *            The distances from the start node
+	 * @param onPath
+	 *            The bitset of the nodes that are on a shortest path
+	 * @param stack
+	 *            The nodes whose predecessors have still to be visited
+	 * @param top
+	 *            The number of nodes on the stack
+	 * @return The new number of nodes on the stack
+	 */
+	static int sweepEdges (int[] offsets, int[] neighbours, float[] weights, int v, double[] distance, long[] onPath, int[] stack, int top) {
+		for (int k = offsets[v]; k < offsets[v + 1]; ++k) {
+			int u = neighbours[k];
+
+			if ((onPath[u >> 6] & (1L << u)) != 0 || Double.isInfinite(distance[u]))
+				continue;
+
+			if (equalDistance(distance[u] + Math.max(0, weights[k]), distance[v])) {
+				onPath[u >> 6] |= 1L << u;
+				stack[top++] = u;
+			}
+		}
+
+		return top;
+	}
+
+	/**
+	 * Find the connected components of the network, ignoring the direction of
+	 * the edges
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @return The components as disjoint sets of node indices
+	 */
+	static UnionFind connectedComponents (GraphSnapshot s) {
+		UnionFind components = new UnionFind(s.numberOfNodes());
+
+		for (int i = 0; i < s.numberOfEdges(); ++i)
+			components.union(s.getEdgeSource(i), s.getEdgeTarget(i));
+
+		return components;
+	}
+
+	/**
+	 * Decompose the network into its k-cores
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @return The coreness of the nodes
+	 */
+	static CoreDecomposition coreDecomposition (GraphSnapshot s) {
+		CoreDecomposition cores = (CoreDecomposition) s.getQueryCache().get(s.getVersion(), "coreDecomposition");
+
+		if (cores == null) {
+			cores = new CoreDecomposition(s);
+			s.getQueryCache().put(s.getVersion(), cores, s.numberOfNodes() + 1, "coreDecomposition");
+		}
+
+		return cores;
+	}
+
+	/**
+	 * Count the triangles of the network and compute the clustering
+	 * coefficients
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @return The triangles and clustering coefficients
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while counting
+	 */
+	static Triangles triangles (GraphSnapshot s) throws InterruptedException {
+		Triangles triangles = (Triangles) s.getQueryCache().get(s.getVersion(), "triangles");
+
+		if (triangles == null) {
+			triangles = new Triangles(s);
+			s.getQueryCache().put(s.getVersion(), triangles, s.numberOfNodes() + 1, "triangles");
+		}
+
+		return triangles;
+	}
+
+	/**
+	 * Build the index that answers whether one node reaches another
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @return The reachability index
+	 */
+	static Reachability reachability (GraphSnapshot s) {
+		Reachability index = (Reachability) s.getQueryCache().get(s.getVersion(), "reachability");
+
+		if (index == null) {
+			index = new Reachability(s);
+			s.getQueryCache().put(s.getVersion(), index, s.numberOfNodes() + 1, "reachability");
+		}
+
+		return index;
+	}
+
+	/**
+	 * Find the strongly connected components of the network, following the
+	 * direction of the edges, and their condensation
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @return The strongly connected components
+	 */
+	static StrongComponents strongComponents (GraphSnapshot s) {
+		StrongComponents components = (StrongComponents) s.getQueryCache().get(s.getVersion(), "strongComponents");
+
+		if (components == null) {
+			components = new StrongComponents(s);
+			s.getQueryCache().put(s.getVersion(), components, s.numberOfNodes() + 1, "strongComponents");
+		}
 
 		return components;
 	}
 
 	/**
-	 * Return all neighbours of the currently selected nodes
+	 * Return all neighbours of the currently selected nodes. Each neighbour is
+	 * returned once, in the order of the nodes in the snapshot
 	 * 
-	 * @param ps
-	 *            The particle system
+	 * @param s
+	 *            The snapshot of the network
+	 * @param selected
+	 *            The selected nodes
 	 * @return The list of all neighbours of the selected nodes
 	 */
-	static ArrayList<Node> getAllNeighbours (ParticleSystem ps) {
-		Edge e = null;
+	static ArrayList<Node> getAllNeighbours (GraphSnapshot s, ArrayList<Node> selected) {
+		Object[] key = new Object[] { "getAllNeighbours", QueryCache.ids(selected) };
+		ArrayList<Node> result = s.getQueryCache().getNodes(s.getVersion(), key);
 
-		ArrayList<Node> neighbours = new ArrayList<Node>();
+		if (result == null) {
+			result = allNeighbours(s, selected);
+			s.getQueryCache().putNodes(s.getVersion(), result, key);
+		}
 
-		for (int i = 0; i < ps.numberOfSelectedNodes(); ++i) {
-			for (int j = 0; j < ps.numberOfEdges(); ++j) {
-				e = ps.getEdge(j);
+		return result;
+	}
+
+	/**
+	 * Compute the result of getAllNeighbours() without the cache
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param selected
+	 *            The selected nodes
+	 * @return The list of all neighbours of the selected nodes
+	 */
+	static ArrayList<Node> allNeighbours (GraphSnapshot s, ArrayList<Node> selected) {
+		Adjacency a = s.getAdjacency();
+		int[] offsets = a.getOffsets();
+		int[] adjacent = a.getNeighbours();
+		long[] found = new long[(a.size() + 63) >> 6];
+
+		for (int i = 0; i < selected.size(); ++i) {
+			int u = s.indexOf(selected.get(i));
+			if (u == -1)
+				continue;
+
+			for (int k = offsets[u]; k < offsets[u + 1]; ++k)
+				found[adjacent[k] >> 6] |= 1L << adjacent[k];
+		}
+
+		return toNodes(s, found);
+	}
+
+	/**
+	 * Return the common neighbours of the currently selected nodes, i.e. the
+	 * nodes that are adjacent to every selected node. The rows of the
+	 * selected nodes are intersected in the order of increasing degree. As long
+	 * as few candidates are left, they are looked up in each row by merging or,
+	 * for rows much longer than the candidate list, by galloping. If the
+	 * candidates are dense, the rows are intersected as bitsets instead
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param selected
+	 *            The selected nodes
+	 * @return The list of common neighbours of the selected nodes
+	 */
+	static ArrayList<Node> getCommonNeighbours (GraphSnapshot s, ArrayList<Node> selected) {
+		Object[] key = new Object[] { "getCommonNeighbours", QueryCache.ids(selected) };
+		ArrayList<Node> result = s.getQueryCache().getNodes(s.getVersion(), key);
+
+		if (result == null) {
+			result = commonNeighbours(s, selected);
+			s.getQueryCache().putNodes(s.getVersion(), result, key);
+		}
+
+		return result;
+	}
 
-				if (e.getSource().equals(ps.getSelectedNode(i)))
-					neighbours.add(e.getTarget());
-				else if (e.getTarget().equals(ps.getSelectedNode(i)))
-					neighbours.add(e.getSource());
+	/**
+	 * Compute the result of getCommonNeighbours() without the cache
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param selected
+	 *            The selected nodes
+	 * @return The list of common neighbours of the selected nodes
+	 */
+	static ArrayList<Node> commonNeighbours (GraphSnapshot s, ArrayList<Node> selected) {
+		if (selected.size() <= 1)
+			return getAllNeighbours(s, selected);
+
+		Adjacency a = s.getAdjacency();
+		int[] offsets = a.getOffsets();
+		int[] adjacent = a.getNeighbours();
+
+		// order the selected nodes by degree, so the candidates start as small
+		// as possible
+		long[] order = new long[selected.size()];
+		int k = 0;
+		for (int i = 0; i < selected.size(); ++i) {
+			int u = s.indexOf(selected.get(i));
+			if (u != -1)
+				order[k++] = ((long) (offsets[u + 1] - offsets[u]) << 32) | u;
+		}
+		if (k == 0)
+			return new ArrayList<Node>();
+		Arrays.sort(order, 0, k);
+
+		int first = (int) order[0];
+		int count = offsets[first + 1] - offsets[first];
+		int words = (a.size() + 63) >> 6;
+
+		if (count > words) {
+			long[] candidates = new long[words];
+			long[] row = new long[words];
+			for (int j = offsets[first]; j < offsets[first + 1]; ++j)
+				candidates[adjacent[j] >> 6] |= 1L << adjacent[j];
+
+			for (int i = 1; i < k; ++i) {
+				int u = (int) order[i];
+				for (int j = offsets[u]; j < offsets[u + 1]; ++j)
+					row[adjacent[j] >> 6] |= 1L << adjacent[j];
+
+				long any = 0;
+				for (int w = 0; w < words; ++w) {
+					candidates[w] &= row[w];
+					any |= candidates[w];
+				}
+				if (any == 0)
+					break;
+
+				// clear only the bits that were set, the row is reused
+				for (int j = offsets[u]; j < offsets[u + 1]; ++j)
+					row[adjacent[j] >> 6] = 0;
 			}
+
+			return toNodes(s, candidates);
 		}
 
+		int[] candidates = new int[count];
+		System.arraycopy(adjacent, offsets[first], candidates, 0, count);
+
+		for (int i = 1; i < k && count > 0; ++i) {
+			int u = (int) order[i];
+			count = intersect(candidates, count, adjacent, offsets[u], offsets[u + 1]);
+		}
+
+		ArrayList<Node> neighbours = new ArrayList<Node>(count);
+		for (int i = 0; i < count; ++i)
+			neighbours.add(s.getNode(candidates[i]));
+
 		return neighbours;
 	}
 
 	/**
-	 * Return the common neighbours of the currently selected nodes
+	 * Return the neighbourhood of the given nodes up to a number of steps,
+	 * ignoring the direction of the edges. A breadth first search from all
+	 * given nodes adds the nodes level by level until the depth or the
+	 * maximal number of nodes is reached. The result is the subgraph that is
+	 * induced by the found nodes
 	 * 
-	 * @param ps
-	 *            The particle system
-	 * @return The list of common neighbours of the selected nodes
+	 * @param s
+	 *            The snapshot of the network
+	 * @param seeds
+	 *            The nodes whose neighbourhood is returned
+	 * @param depth
+	 *            The maximal number of steps from the nearest seed
+	 * @param maxNodes
+	 *            The maximal number of nodes in the neighbourhood, including
+	 *            the seeds
+	 * @return The neighbourhood, nodes are ordered by their distance from the
+	 *         seeds
+	 */
+	static Subgraph neighbourhood (GraphSnapshot s, ArrayList<Node> seeds, int depth, int maxNodes) {
+		Object[] key = new Object[] { "neighbourhood", QueryCache.ids(seeds), depth, maxNodes };
+		Subgraph result = (Subgraph) s.getQueryCache().get(s.getVersion(), key);
+		if (result != null)
+			return result;
+
+		Adjacency a = s.getAdjacency();
+		int[] offsets = a.getOffsets();
+		int[] neighbours = a.getNeighbours();
+
+		int[] queue = new int[a.size()];
+		long[] found = new long[(a.size() + 63) >> 6];
+		int tail = 0;
+		for (int i = 0; i < seeds.size() && tail < maxNodes; ++i) {
+			int v = s.indexOf(seeds.get(i));
+			if (v != -1 && (found[v >> 6] & (1L << v)) == 0) {
+				found[v >> 6] |= 1L << v;
+				queue[tail++] = v;
+			}
+		}
+
+		// expand one level after the other
+		int head = 0;
+		for (int level = 0; level < depth && head < tail && tail < maxNodes; ++level) {
+			int end = tail;
+			for (; head < end && tail < maxNodes; ++head) {
+				int v = queue[head];
+				for (int k = offsets[v]; k < offsets[v + 1] && tail < maxNodes; ++k) {
+					int w = neighbours[k];
+					if ((found[w >> 6] & (1L << w)) == 0) {
+						found[w >> 6] |= 1L << w;
+						queue[tail++] = w;
+					}
+				}
+			}
+		}
+
+		result = new Subgraph(s, queue, tail);
+		s.getQueryCache().put(s.getVersion(), result, result.numberOfNodes() + result.numberOfEdges() + 1, key);
+
+		return result;
+	}
+
+	/**
+	 * Return the first position in a sorted range of an array whose value is
+	 * not smaller than the given key. The range is searched with exponentially
+	 * growing steps from its beginning, followed by a binary search, so keys
+	 * near the beginning are found quickly
+	 * 
+	 * @param values
+	 *            The array
+	 * @param from
+	 *            The first position of the range
+	 * @param to
+	 *            The position after the last one of the range
+	 * @param key
+	 *            The key that is searched
+	 * @return The position of the key or of the first larger value, to if all
+	 *         values are smaller
 	 */
-	static ArrayList<Node> getCommonNeighbours (ParticleSystem ps) {
-		ArrayList<Node> neighbours = new ArrayList<Node>();
+	static int gallop (int[] values, int from, int to, int key) {
+		int low = from;
+		int step = 1;
+		while (low + step < to && values[low + step] < key) {
+			low += step;
+			step <<= 1;
+		}
 
-		if (ps.numberOfSelectedNodes() <= 1)
-			return getAllNeighbours(ps);
+		int high = Math.min(low + step, to);
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (values[middle] < key)
+				low = middle + 1;
+			else
+				high = middle;
+		}
 
-		Node n = ps.getSelectedNode(0);
-		Edge e = null;
+		return low;
+	}
 
-		// Add all neighbours of the first selected node to the neighbours list
-		for (int i = 0; i < ps.numberOfEdges(); ++i) {
-			e = ps.getEdge(i);
+	/**
+	 * Intersect a sorted list of candidates with a sorted row of the
+	 * adjacency. Rows that are much longer than the candidate list are
+	 * searched by galloping, others are merged
+	 * 
+	 * @param candidates
+	 *            The candidates, overwritten with the intersection
+	 * @param count
+	 *            The number of candidates
+	 * @param row
+	 *            The array holding the row
+	 * @param from
+	 *            The first position of the row
+	 * @param to
+	 *            The position after the last one of the row
+	 * @return The number of candidates in the intersection
+	 */
+	static int intersect (int[] candidates, int count, int[] row, int from, int to) {
+		int kept = 0;
 
-			if (e.getSource().equals(n))
-				neighbours.add(e.getTarget());
-			else if (e.getTarget().equals(n))
-				neighbours.add(e.getSource());
+		if ((to - from) > 8 * count) {
+			int j = from;
+			for (int i = 0; i < count && j < to; ++i) {
+				j = gallop(row, j, to, candidates[i]);
+				if (j < to && row[j] == candidates[i])
+					candidates[kept++] = candidates[i];
+			}
+		} else {
+			int i = 0;
+			int j = from;
+			while (i < count && j < to) {
+				if (candidates[i] < row[j])
+					++i;
+				else if (candidates[i] > row[j])
+					++j;
+				else {
+					candidates[kept++] = candidates[i];
+					++i;
+					++j;
+				}
+			}
 		}
 
-		Node n2 = null;
-		boolean isNeighbour = false;
+		return kept;
+	}
+
+	/**
+	 * Compute the eigenvector centrality of the nodes by power iteration: each
+	 * node's value is the sum of the values of the nodes with an edge towards
+	 * it, normalised to unit length. The iteration runs on the adjacency plus
+	 * the identity, which has the same eigenvectors but does not oscillate on
+	 * bipartite networks
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param weighted
+	 *            Whether the edges count with their weights instead of 1
+	 * @param tolerance
+	 *            The iteration stops when the values change by less than this
+	 *            in sum
+	 * @param maxIterations
+	 *            The maximal number of iterations
+	 * @return The eigenvector centrality of each node
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the workers
+	 */
+	static float[] eigenvectorCentrality (GraphSnapshot s, boolean weighted, double tolerance, int maxIterations) throws InterruptedException {
+		Adjacency a = s.getAdjacency();
+		int n = a.size();
+
+		double[] x = new double[n];
+		double[] y = new double[n];
+		Arrays.fill(x, 1 / Math.sqrt(Math.max(1, n)));
+
+		for (int iteration = 0; iteration < maxIterations; ++iteration) {
+			multiplyIncoming(a, weighted, x, y);
+
+			double norm = 0;
+			for (int v = 0; v < n; ++v) {
+				y[v] += x[v];
+				norm += y[v] * y[v];
+			}
+			norm = Math.sqrt(norm);
+			if (norm == 0)
+				break;
+
+			double change = 0;
+			for (int v = 0; v < n; ++v) {
+				y[v] /= norm;
+				change += Math.abs(y[v] - x[v]);
+			}
 
-		// Delete nodes from the neighbourslist that are not neighbours of other
-		// selected nodes
-		Iterator<Node> neighboursIt = neighbours.iterator();
-		while (neighboursIt.hasNext()) {
-			n = neighboursIt.next();
+			double[] t = x;
+			x = y;
+			y = t;
 
-			for (int i = 1; i < ps.numberOfSelectedNodes(); ++i) {
-				n2 = ps.getSelectedNode(i);
-				isNeighbour = false;
+			if (change < tolerance)
+				break;
+		}
 
-				for (int j = 0; j < ps.numberOfEdges(); ++j) {
-					e = ps.getEdge(j);
+		float[] centrality = new float[n];
+		for (int v = 0; v < n; ++v)
+			centrality[v] = (float) x[v];
+
+		return centrality;
+	}
 
-					if ((e.getSource().equals(n) && e.getTarget().equals(n2)) || (e.getSource().equals(n2) && e.getTarget().equals(n)))
-						isNeighbour = true;
+	/**
+	 * Multiply the given vector with the transposed adjacency matrix: each
+	 * node receives the weighted sum of the values of the nodes with an edge
+	 * towards it, in undirected networks of all its neighbours. Networks with
+	 * many nodes are split into chunks that are computed in parallel
+	 * 
+	 * @param a
+	 *            The adjacency of the network
+	 * @param weighted
+	 *            Whether the edges count with their weights instead of 1
+	 * @param x
+	 *            The value of each node
+	 * @param y
+	 *            Receives the sum of each node
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the workers
+	 */
+	static void multiplyIncoming (final Adjacency a, final boolean weighted, final double[] x, final double[] y) throws InterruptedException {
+		int n = a.size();
+
+		if (n < PARALLEL_NODES) {
+			multiplyIncoming(a, weighted, x, y, 0, n);
+			return;
+		}
+
+		int chunks = 4 * Parallel.threads();
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>(chunks);
+		for (int i = 0; i < chunks; ++i) {
+			final int from = (int) ((long) n * i / chunks);
+			final int to = (int) ((long) n * (i + 1) / chunks);
+			tasks.add(new Callable<Object>() {
+				public Object call () {
+					multiplyIncoming(a, weighted, x, y, from, to);
+					return null;
 				}
+			});
+		}
 
-				if (!isNeighbour) {
-					neighboursIt.remove();
-					break;
+		Parallel.invokeAll(tasks);
+	}
+
+	/**
+	 * Multiply the given vector with the transposed adjacency matrix for a
+	 * range of nodes
+	 * 
+	 * @param a
+	 *            The adjacency of the network
+	 * @param weighted
+	 *            Whether the edges count with their weights instead of 1
+	 * @param x
+	 *            The value of each node
+	 * @param y
+	 *            Receives the sum of each node in the range
+	 * @param from
+	 *            The first node of the range
+	 * @param to
+	 *            The node after the last one of the range
+	 */
+	static void multiplyIncoming (Adjacency a, boolean weighted, double[] x, double[] y, int from, int to) {
+		int[] inOffsets = a.getInOffsets();
+		int[] inNeighbours = a.getInNeighbours();
+		float[] inWeights = a.getInWeights();
+		int[] outOffsets = a.getOutOffsets();
+		int[] outNeighbours = a.getOutNeighbours();
+		float[] outWeights = a.getOutWeights();
+		boolean both = !a.isDirected();
+
+		for (int v = from; v < to; ++v) {
+			double sum = 0;
+			for (int k = inOffsets[v]; k < inOffsets[v + 1]; ++k)
+				sum += (weighted ? Math.max(0, inWeights[k]) : 1) * x[inNeighbours[k]];
+			if (both)
+				for (int k = outOffsets[v]; k < outOffsets[v + 1]; ++k)
+					sum += (weighted ? Math.max(0, outWeights[k]) : 1) * x[outNeighbours[k]];
+			y[v] = sum;
+		}
+	}
+
+	/**
+	 * Compute the PageRank of the nodes by power iteration. A random surfer
+	 * follows an edge with the given probability, chosen in proportion to the
+	 * edge weights, and otherwise jumps to a random node; nodes without
+	 * outgoing edges always jump. Undirected edges are followed both ways
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param weighted
+	 *            Whether the edges are chosen in proportion to their weights
+	 * @param damping
+	 *            The probability of following an edge
+	 * @param tolerance
+	 *            The iteration stops when the ranks change by less than this
+	 *            in sum
+	 * @param maxIterations
+	 *            The maximal number of iterations
+	 * @return The PageRank of each node, the ranks add up to 1
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the workers
+	 */
+	static float[] pageRank (GraphSnapshot s, boolean weighted, double damping, double tolerance, int maxIterations) throws InterruptedException {
+		Adjacency a = s.getAdjacency();
+		int n = a.size();
+		if (n == 0)
+			return new float[0];
+
+		// the summed weight of the edges each node can follow
+		int[] outOffsets = a.getOutOffsets();
+		float[] outWeights = a.getOutWeights();
+		int[] inOffsets = a.getInOffsets();
+		float[] inWeights = a.getInWeights();
+		double[] strength = new double[n];
+		for (int u = 0; u < n; ++u) {
+			for (int k = outOffsets[u]; k < outOffsets[u + 1]; ++k)
+				strength[u] += weighted ? Math.max(0, outWeights[k]) : 1;
+			if (!a.isDirected())
+				for (int k = inOffsets[u]; k < inOffsets[u + 1]; ++k)
+					strength[u] += weighted ? Math.max(0, inWeights[k]) : 1;
+		}
+
+		double[] rank = new double[n];
+		double[] share = new double[n];
+		double[] next = new double[n];
+		Arrays.fill(rank, 1.0 / n);
+
+		for (int iteration = 0; iteration < maxIterations; ++iteration) {
+			double dangling = 0;
+			for (int u = 0; u < n; ++u) {
+				if (strength[u] > 0)
+					share[u] = rank[u] / strength[u];
+				else {
+					share[u] = 0;
+					dangling += rank[u];
 				}
 			}
+
+			multiplyIncoming(a, weighted, share, next);
+
+			double base = (1 - damping) / n + damping * dangling / n;
+			double change = 0;
+			for (int v = 0; v < n; ++v) {
+				next[v] = base + damping * next[v];
+				change += Math.abs(next[v] - rank[v]);
+			}
+
+			double[] t = rank;
+			rank = next;
+			next = t;
+
+			if (change < tolerance)
+				break;
 		}
 
-		return neighbours;
+		float[] ranks = new float[n];
+		for (int v = 0; v < n; ++v)
+			ranks[v] = (float) rank[v];
+
+		return ranks;
 	}
 
+	/**
+	 * Return the nodes of the snapshot whose bits are set
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param bits
+	 *            The bitset of node indices
+	 * @return The list of nodes, in the order of their indices
+	 */
+	static ArrayList<Node> toNodes (GraphSnapshot s, long[] bits) {
+		ArrayList<Node> nodes = new ArrayList<Node>();
+
+		for (int w = 0; w < bits.length; ++w) {
+			long word = bits[w];
+			while (word != 0) {
+				nodes.add(s.getNode((w << 6) + Long.numberOfTrailingZeros(word)));
+				word &= word - 1;
+			}
+		}
+
+		return nodes;
+	}
 }
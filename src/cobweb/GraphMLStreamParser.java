@@ -0,0 +1,216 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.HashMap;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Parser that reads GraphML-data from a stream and hands every node and edge
+ * to a network builder as soon as it was read completely. The key definitions
+ * have to precede the graph, as demanded by the GraphML specification.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+public class GraphMLStreamParser extends DefaultHandler {
+	/**
+	 * The builder that inserts the parsed elements into the particle system
+	 */
+	NetworkBuilder builder;
+
+	/**
+	 * Whether the graph attributes like direction and picture path are read
+	 */
+	boolean readParameters;
+
+	/**
+	 * The mapping of key-name and -for information to key-ids
+	 */
+	private HashMap<String, String> keyHash = null;
+
+	/**
+	 * The values of the "data" tags of the current element, by key-id
+	 */
+	private HashMap<String, String> data = null;
+
+	/**
+	 * The text content of the current "data" tag
+	 */
+	private StringBuilder text = null;
+
+	/**
+	 * The key-id of the current "data" tag
+	 */
+	private String dataKey = null;
+
+	private boolean inNode = false;
+	private boolean inEdge = false;
+
+	// attributes of the current node or edge
+	private String id = null;
+	private String sId = null;
+	private String tId = null;
+
+	/**
+	 * Initializes the parser
+	 * 
+	 * @param builder
+	 *            The builder that inserts the parsed elements into the particle
+	 *            system
+	 * @param readParameters
+	 *            Whether the graph attributes like direction and picture path
+	 *            are read
+	 */
+	GraphMLStreamParser (NetworkBuilder builder, boolean readParameters) {
+		this.builder = builder;
+		this.readParameters = readParameters;
+
+		keyHash = new HashMap<String, String>();
+		data = new HashMap<String, String>();
+		text = new StringBuilder();
+	}
+
+	/**
+	 * Read the GraphML-data from the given stream
+	 * 
+	 * @param in
+	 *            The stream containing the GraphML-data
+	 */
+	void parse (InputStream in) throws Exception {
+		SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+		parser.parse(new InputSource(in), this);
+	}
+
+	public InputSource resolveEntity (String publicId, String systemId) throws SAXException, IOException {
+		return new InputSource(new StringReader(""));
+	}
+
+	public void characters (char[] ch, int start, int length) {
+		if (dataKey != null)
+			text.append(ch, start, length);
+	}
+
+	public void startElement (String uri, String localName, String qName, Attributes attributes) {
+		if (qName.equals("key")) {
+			keyHash.put(attributes.getValue("attr.name") + "#" + attributes.getValue("for"), attributes.getValue("id"));
+		} else if (qName.equals("graph")) {
+			if (readParameters) {
+				String graphId = attributes.getValue("id");
+				if (graphId != null)
+					builder.getParameters().setLabel(graphId);
+
+				String directed = attributes.getValue("edgedefault");
+				if (directed != null)
+					builder.setDirected(directed.equals("directed"));
+
+				builder.getParameters().setPicturePath(null);
+				builder.getParameters().setNeighbourhoodScript(null);
+			}
+		} else if (qName.equals("node")) {
+			inNode = true;
+			id = attributes.getValue("id");
+			data.clear();
+		} else if (qName.equals("edge")) {
+			inEdge = true;
+			sId = attributes.getValue("source");
+			tId = attributes.getValue("target");
+			data.clear();
+		} else if (qName.equals("data")) {
+			dataKey = attributes.getValue("key");
+			text.setLength(0);
+		}
+	}
+
+	public void endElement (String uri, String localName, String qName) {
+		if (qName.equals("data") && dataKey != null) {
+			if (inNode || inEdge) {
+				if (!data.containsKey(dataKey))
+					data.put(dataKey, text.toString());
+			} else if (readParameters) {
+				if (dataKey.equals(keyHash.get("picturepath#graph")))
+					builder.getParameters().setPicturePath(text.toString());
+				else if (dataKey.equals(keyHash.get("neighbourhoodscript#graph")))
+					builder.getParameters().setNeighbourhoodScript(text.toString());
+			}
+
+			dataKey = null;
+		} else if (qName.equals("node") && inNode) {
+			inNode = false;
+
+			String r = getDataValue("r", "node");
+			String g = getDataValue("g", "node");
+			String b = getDataValue("b", "node");
+			String fillColor = null;
+
+			if (r != null && g != null && b != null) {
+				int color = (255 << 24) | (Integer.parseInt(r) << 16) | (Integer.parseInt(g) << 8) | Integer.parseInt(b);
+				fillColor = "#" + Integer.toHexString(color).substring(2);
+			}
+
+			builder.addNode(id, getDataValue("label", "node"), getDataValue("description", "node"), getDataValue("picture", "node"), getDataValue("shape", "node"), fillColor,
+					getDataValue("x", "node"), getDataValue("y", "node"));
+		} else if (qName.equals("edge") && inEdge) {
+			inEdge = false;
+
+			String r = getDataValue("r", "edge");
+			String g = getDataValue("g", "edge");
+			String b = getDataValue("b", "edge");
+			String color = null;
+
+			if (r != null && g != null && b != null) {
+				int col = (255 << 24) | (Integer.parseInt(r) << 16) | (Integer.parseInt(g) << 8) | Integer.parseInt(b);
+				color = "#" + Integer.toHexString(col).substring(2);
+			}
+
+			builder.addEdge(sId, tId, getDataValue("weight", "edge"), getDataValue("label", "edge"), getDataValue("shape", "edge"), color);
+		}
+	}
+
+	/**
+	 * Return a value given in a "data" tag of the current node or edge
+	 * 
+	 * @param attributeName
+	 *            The name of the key corresponding to the "data" tag whose
+	 *            value is returned
+	 * @param domain
+	 *            The element type the key is defined for, "node" or "edge"
+	 * @return The value given in the "data" tag or null if it is not given
+	 */
+	private String getDataValue (String attributeName, String domain) {
+		String key = keyHash.get(attributeName + "#" + domain);
+
+		if (key == null)
+			return null;
+
+		return data.get(key);
+	}
+}
@@ -0,0 +1,164 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+/**
+ * Binary min-heap of the integers 0 to n - 1 with a double key each. The
+ * position of every element in the heap is tracked, so keys can be decreased
+ * in O(log n) without boxing or searching.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class IndexedMinHeap {
+	/**
+	 * The elements in heap order
+	 */
+	private int[] heap;
+
+	/**
+	 * The position of each element in the heap, -1 if it is not in the heap
+	 */
+	private int[] position;
+
+	/**
+	 * The key of each element
+	 */
+	private double[] keys;
+
+	/**
+	 * The number of elements in the heap
+	 */
+	private int size = 0;
+
+	/**
+	 * Create an empty heap
+	 * 
+	 * @param n
+	 *            The number of possible elements
+	 */
+	IndexedMinHeap (int n) {
+		heap = new int[n];
+		position = new int[n];
+		keys = new double[n];
+
+		for (int i = 0; i < n; ++i)
+			position[i] = -1;
+	}
+
+	/**
+	 * Return true if the heap is empty
+	 * 
+	 * @return true if the heap is empty, otherwise false
+	 */
+	boolean isEmpty () {
+		return size == 0;
+	}
+
+	/**
+	 * Return the smallest key in the heap. The heap must not be empty
+	 * 
+	 * @return The smallest key
+	 */
+	double minKey () {
+		return keys[heap[0]];
+	}
+
+	/**
+	 * Remove the element with the smallest key from the heap. The heap must
+	 * not be empty
+	 * 
+	 * @return The element with the smallest key
+	 */
+	int poll () {
+		int min = heap[0];
+		position[min] = -1;
+
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+
+		return min;
+	}
+
+	/**
+	 * Insert an element or decrease its key, if it is already in the heap.
+	 * Larger keys are ignored for elements in the heap
+	 * 
+	 * @param i
+	 *            The element
+	 * @param key
+	 *            The key of the element
+	 */
+	void push (int i, double key) {
+		if (position[i] == -1) {
+			keys[i] = key;
+			heap[size] = i;
+			position[i] = size;
+			size++;
+			siftUp(size - 1);
+		} else if (key < keys[i]) {
+			keys[i] = key;
+			siftUp(position[i]);
+		}
+	}
+
+	private void siftDown (int pos) {
+		int i = heap[pos];
+
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]])
+				child++;
+			if (keys[heap[child]] >= keys[i])
+				break;
+
+			heap[pos] = heap[child];
+			position[heap[pos]] = pos;
+			pos = child;
+		}
+
+		heap[pos] = i;
+		position[i] = pos;
+	}
+
+	private void siftUp (int pos) {
+		int i = heap[pos];
+
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (keys[heap[parent]] <= keys[i])
+				break;
+
+			heap[pos] = heap[parent];
+			position[heap[pos]] = pos;
+			pos = parent;
+		}
+
+		heap[pos] = i;
+		position[i] = pos;
+	}
+}
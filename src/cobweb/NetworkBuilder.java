@@ -0,0 +1,525 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import particlesystem.Edge;
+import particlesystem.GraphSnapshot;
+import particlesystem.Node;
+import particlesystem.ParticleSystem;
+
+/**
+ * Inserts the nodes and edges reported by the streaming parsers into the
+ * particle system. Edges whose nodes have not been read yet are kept back
+ * until the end of the stream. In deferred mode the parsing thread does not
+ * touch the particle system at all; it creates the nodes and edges and
+ * publishes them in batches that the animation thread applies between frames.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class NetworkBuilder {
+	/**
+	 * The particle system the network is added to
+	 */
+	ParticleSystem ps;
+
+	/**
+	 * Stores the parameters like picture path and neighbourhoodscript
+	 */
+	Parameters params;
+
+	/**
+	 * The x-position where new nodes are to appear
+	 */
+	float x;
+
+	/**
+	 * The y-position where new nodes are to appear
+	 */
+	float y;
+
+	/**
+	 * The default edge-length
+	 */
+	float edgeLength;
+
+	/**
+	 * Whether to fix new nodes after they were placed
+	 */
+	boolean fix;
+
+	/**
+	 * Whether nodes and edges are published in batches instead of being added
+	 * to the particle system directly
+	 */
+	boolean deferred;
+
+	/**
+	 * The number of nodes and edges that are collected before they are
+	 * published as one batch
+	 */
+	static final int BATCH_SIZE = 100;
+
+	/**
+	 * The number of steps new nodes are laid out before they are fixed
+	 */
+	static final int FIX_STEPS = 20;
+
+	/**
+	 * The nodes read so far, by their id
+	 */
+	private HashMap<String, Node> nodesById = null;
+
+	/**
+	 * In deferred mode the nodes that were in the particle system when the
+	 * first node was looked up, by their id, null until then
+	 */
+	private HashMap<String, Node> presentNodes = null;
+
+	/**
+	 * In deferred mode the nodes of this builder that were rejected by the
+	 * particle system because a node with the same id was added in the
+	 * meantime, mapped to that node
+	 */
+	private IdentityHashMap<Node, Node> replacedNodes = null;
+
+	/**
+	 * The nodes that were created by this builder
+	 */
+	private ArrayList<Node> newNodes = null;
+
+	/**
+	 * Edges that refer to nodes that have not been read yet. Each entry holds
+	 * source id, target id, weight, annotation, shape and color
+	 */
+	private ArrayList<String[]> pendingEdges = null;
+
+	/**
+	 * The number of edges that were added to the particle system
+	 */
+	private int edgeCount = 0;
+
+	private Random random = null;
+
+	/**
+	 * The nodes and edges that are collected for the next batch, in the order
+	 * they were read
+	 */
+	private ArrayList<Object> batch = null;
+
+	/**
+	 * The batches that were published but not applied yet
+	 */
+	private ConcurrentLinkedQueue<ArrayList<Object>> batches = null;
+
+	/**
+	 * Whether all streams were read and the last batch was published
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * Initializes the builder
+	 * 
+	 * @param ps
+	 *            The particle system the network is added to
+	 * @param params
+	 *            The parameters of the network
+	 * @param x
+	 *            The x-position where new nodes are to appear
+	 * @param y
+	 *            The y-position where new nodes are to appear
+	 * @param edgeLength
+	 *            The default edge-length
+	 * @param fix
+	 *            Whether to fix new nodes after they were placed
+	 */
+	NetworkBuilder (ParticleSystem ps, Parameters params, float x, float y, float edgeLength, boolean fix) {
+		this(ps, params, x, y, edgeLength, fix, false);
+	}
+
+	/**
+	 * Initializes the builder
+	 * 
+	 * @param ps
+	 *            The particle system the network is added to
+	 * @param params
+	 *            The parameters of the network
+	 * @param x
+	 *            The x-position where new nodes are to appear
+	 * @param y
+	 *            The y-position where new nodes are to appear
+	 * @param edgeLength
+	 *            The default edge-length
+	 * @param fix
+	 *            Whether to fix new nodes after they were placed. In
+	 *            deferred mode the caller has to fix them by calling
+	 *            fixNewNodes() after the batches were applied
+	 * @param deferred
+	 *            Whether nodes and edges are published in batches that have to
+	 *            be applied by calling applyBatches()
+	 */
+	NetworkBuilder (ParticleSystem ps, Parameters params, float x, float y, float edgeLength, boolean fix, boolean deferred) {
+		this.ps = ps;
+		this.params = params;
+		this.x = x;
+		this.y = y;
+		this.edgeLength = edgeLength;
+		this.fix = fix;
+		this.deferred = deferred;
+
+		nodesById = new HashMap<String, Node>();
+		replacedNodes = new IdentityHashMap<Node, Node>();
+		newNodes = new ArrayList<Node>();
+		pendingEdges = new ArrayList<String[]>();
+		random = new Random();
+		batch = new ArrayList<Object>();
+		batches = new ConcurrentLinkedQueue<ArrayList<Object>>();
+	}
+
+	/**
+	 * Add spacers between the given node and every other node in the particle
+	 * system, these spacers cause tow nodes to repulse each other.
+	 * 
+	 * @param n
+	 *            The node that has to get spacers to all other nodes
+	 */
+	void addSpacersToNode (Node n) {
+		for (int i = 0; i < ps.numberOfNodes(); ++i) {
+			Node q = ps.getNode(i);
+			if (n != q)
+				ps.makeRepulsion(n, q, Cobweb.repulsionStrength, 20);
+		}
+	}
+
+	/**
+	 * Add an edge to the particle system. If one of its nodes is not known yet,
+	 * the edge is added when the stream is finished
+	 * 
+	 * @param sId
+	 *            The id of the source node
+	 * @param tId
+	 *            The id of the target node
+	 * @param weight
+	 *            The edge's weight, may be null
+	 * @param annotation
+	 *            The edge's annotation
+	 * @param shape
+	 *            The edge's shape
+	 * @param color
+	 *            The edge's color as a hexadecimal string
+	 */
+	void addEdge (String sId, String tId, String weight, String annotation, String shape, String color) {
+		Node s = getNode(sId);
+		Node t = getNode(tId);
+
+		if (s == null || t == null) {
+			pendingEdges.add(new String[] { sId, tId, weight, annotation, shape, color });
+			return;
+		}
+
+		float fweight = 1.0f;
+		if (weight != null && !weight.equals(""))
+			fweight = Float.valueOf(weight);
+
+		if (deferred) {
+			addToBatch(new Edge(s, t, fweight, annotation, shape, ps.isDirected(), color, Cobweb.edgeStrength, Cobweb.edgeStrength, edgeLength));
+			edgeCount++;
+		} else if (ps.makeEdge(s, t, fweight, annotation, shape, color, Cobweb.edgeStrength, Cobweb.edgeStrength, edgeLength) != null)
+			edgeCount++;
+	}
+
+	/**
+	 * Add a node to the particle system
+	 * 
+	 * @param id
+	 *            The node's id
+	 * @param name
+	 *            The node's name
+	 * @param description
+	 *            A longer description of the node
+	 * @param picture
+	 *            The picture that is used to represent the node
+	 * @param shape
+	 *            The node's shape
+	 * @param fillColor
+	 *            The node's color as a hexadecimal string
+	 * @param xPos
+	 *            The node's x-position or null if it is not given
+	 * @param yPos
+	 *            The node's y-position or null if it is not given
+	 */
+	void addNode (String id, String name, String description, String picture, String shape, String fillColor, String xPos, String yPos) {
+		if (name == null)
+			name = "";
+
+		Node n = null;
+
+		if (deferred) {
+			if (getNode(id) == null)
+				n = new Node(id, name, description, picture, params.getServerAdress() + params.getPicturePath(), shape, fillColor);
+		} else {
+			n = ps.makeNode(id, name, description, picture, params.getServerAdress() + params.getPicturePath(), shape, fillColor);
+			if (n != null)
+				addSpacersToNode(n);
+		}
+
+		if (n != null) {
+			if (xPos == null || yPos == null) {
+				n.getPosition().set(x + (random.nextFloat() * 2 - 1), y + (random.nextFloat() * 2 - 1));
+			} else {
+				n.getPosition().set(Float.parseFloat(xPos), Float.parseFloat(yPos));
+				n.fix();
+			}
+
+			nodesById.put(id, n);
+			newNodes.add(n);
+
+			if (deferred)
+				addToBatch(n);
+		}
+	}
+
+	/**
+	 * Add a node or an edge to the current batch and publish the batch if it
+	 * is full
+	 * 
+	 * @param element
+	 *            The node or edge
+	 */
+	private void addToBatch (Object element) {
+		batch.add(element);
+
+		if (batch.size() >= BATCH_SIZE)
+			flush();
+	}
+
+	/**
+	 * Add the published batches to the particle system until all batches are
+	 * applied or the given time is used up. A node whose id was added to the
+	 * particle system in the meantime is replaced by the present node in the
+	 * edges that follow. Has to be called by the thread that runs the particle
+	 * system
+	 * 
+	 * @param budget
+	 *            The time in milliseconds that may be spent
+	 */
+	void applyBatches (long budget) {
+		long end = System.currentTimeMillis() + budget;
+		ArrayList<Object> b = null;
+
+		while (System.currentTimeMillis() < end && (b = batches.poll()) != null) {
+			for (int i = 0; i < b.size(); ++i) {
+				Object element = b.get(i);
+
+				if (element instanceof Node) {
+					Node n = (Node) element;
+					if (ps.addNode(n))
+						addSpacersToNode(n);
+					else if (ps.getNodeById(n.getId()) != null)
+						replacedNodes.put(n, ps.getNodeById(n.getId()));
+				} else
+					applyEdge((Edge) element);
+			}
+		}
+	}
+
+	/**
+	 * Add an edge of a batch to the particle system. If one of its nodes was
+	 * replaced, a copy of the edge that ends at the present node is added
+	 * instead
+	 * 
+	 * @param e
+	 *            The edge
+	 */
+	private void applyEdge (Edge e) {
+		Node s = replacedNodes.get(e.getSource());
+		Node t = replacedNodes.get(e.getTarget());
+
+		if (s != null || t != null) {
+			if (s == null)
+				s = e.getSource();
+			if (t == null)
+				t = e.getTarget();
+
+			e = new Edge(s, t, e.getWeight(), e.getAnnotation(), e.getShapeAsString(), ps.isDirected(), e.getColorAsHexString(), e.getStrength(), e.getDamping(), e.getRestLength());
+		}
+
+		ps.addEdge(e);
+	}
+
+	/**
+	 * Mark that no more streams will be read. In deferred mode the loading is
+	 * complete after the remaining batches were applied
+	 */
+	void close () {
+		flush();
+		closed = true;
+	}
+
+	/**
+	 * Publish the current batch
+	 */
+	private void flush () {
+		if (deferred && !batch.isEmpty()) {
+			batches.add(batch);
+			batch = new ArrayList<Object>();
+		}
+	}
+
+	/**
+	 * Return true if all streams were read and all batches were applied
+	 * 
+	 * @return true if the loading is complete, otherwise false
+	 */
+	boolean isComplete () {
+		return closed && batches.isEmpty();
+	}
+
+	/**
+	 * Add the edges that were kept back and fix the new nodes if requested.
+	 * Has to be called after the stream was read completely
+	 */
+	void finish () {
+		for (int i = 0; i < pendingEdges.size(); ++i) {
+			String[] e = pendingEdges.get(i);
+
+			if (getNode(e[0]) != null && getNode(e[1]) != null)
+				addEdge(e[0], e[1], e[2], e[3], e[4], e[5]);
+		}
+		pendingEdges.clear();
+
+		flush();
+
+		if (fix && !deferred) {
+			for (int i = 0; i < FIX_STEPS; ++i)
+				ps.tick();
+
+			fixNewNodes();
+		}
+	}
+
+	/**
+	 * Fix all nodes that were created by this builder
+	 */
+	void fixNewNodes () {
+		for (int i = 0; i < newNodes.size(); ++i)
+			newNodes.get(i).fix();
+	}
+
+	/**
+	 * Return the node with the given id, either read by this builder or
+	 * already present in the particle system. In deferred mode the present
+	 * nodes are taken from a snapshot, so the particle system is not touched
+	 * 
+	 * @param id
+	 *            The node's id
+	 * @return The node or null if no node with this id is known
+	 */
+	Node getNode (String id) {
+		Node n = nodesById.get(id);
+
+		if (n == null && !deferred) {
+			n = ps.getNodeById(id);
+			if (n != null)
+				nodesById.put(id, n);
+		} else if (n == null) {
+			if (presentNodes == null) {
+				GraphSnapshot s = ps.getSnapshot();
+				presentNodes = new HashMap<String, Node>();
+				for (int i = 0; i < s.numberOfNodes(); ++i)
+					presentNodes.put(s.getNode(i).getId(), s.getNode(i));
+			}
+
+			n = presentNodes.get(id);
+			if (n != null)
+				nodesById.put(id, n);
+		}
+
+		return n;
+	}
+
+	/**
+	 * Return the number of edges that were added so far
+	 * 
+	 * @return The number of edges that were added so far
+	 */
+	int numberOfEdges () {
+		return edgeCount;
+	}
+
+	/**
+	 * Return the i-th node that was added by this builder
+	 * 
+	 * @param i
+	 *            The number of the node that is to be returned
+	 * @return The i-th node that was added by this builder
+	 */
+	Node getNewNode (int i) {
+		return newNodes.get(i);
+	}
+
+	/**
+	 * Return the number of nodes that were added so far
+	 * 
+	 * @return The number of nodes that were added so far
+	 */
+	int numberOfNodes () {
+		return newNodes.size();
+	}
+
+	/**
+	 * Return the parameters of the network
+	 * 
+	 * @return The parameters object
+	 */
+	Parameters getParameters () {
+		return params;
+	}
+
+	/**
+	 * Set the position where new nodes are to appear
+	 * 
+	 * @param x
+	 *            The x-position where new nodes are to appear
+	 * @param y
+	 *            The y-position where new nodes are to appear
+	 */
+	void setOrigin (float x, float y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Set whether the edges of the network are directed
+	 * 
+	 * @param d
+	 *            true if the edges are directed
+	 */
+	void setDirected (boolean d) {
+		ps.setDirected(d);
+	}
+}
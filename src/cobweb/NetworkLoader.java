@@ -0,0 +1,209 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+
+import javax.swing.JOptionPane;
+
+import processing.core.PApplet;
+
+/**
+ * Loads a network file from a server. A reader thread streams the file into a
+ * bounded buffer while the calling thread parses it, so downloading and
+ * parsing overlap instead of adding up.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class NetworkLoader {
+	/**
+	 * The size of the buffer between the reader thread and the parser in bytes
+	 */
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The parent applet
+	 */
+	PApplet parent;
+
+	/**
+	 * The address of the network file
+	 */
+	String address;
+
+	/**
+	 * The format of the network file (xgmml, graphml or sif)
+	 */
+	String networkType;
+
+	/**
+	 * The builder that inserts the parsed elements into the particle system
+	 */
+	NetworkBuilder builder;
+
+	/**
+	 * Whether the graph attributes like direction and picture path are read
+	 */
+	boolean readParameters;
+
+	/**
+	 * The exception that stopped the reader thread, if any
+	 */
+	private volatile IOException readError = null;
+
+	/**
+	 * Initializes the loader
+	 * 
+	 * @param parent
+	 *            The parent applet
+	 * @param address
+	 *            The address of the network file
+	 * @param networkType
+	 *            The format of the network file (xgmml, graphml or sif)
+	 * @param builder
+	 *            The builder that inserts the parsed elements into the particle
+	 *            system
+	 * @param readParameters
+	 *            Whether the graph attributes like direction and picture path
+	 *            are read
+	 */
+	NetworkLoader (PApplet parent, String address, String networkType, NetworkBuilder builder, boolean readParameters) {
+		this.parent = parent;
+		this.address = address;
+		this.networkType = networkType;
+		this.builder = builder;
+		this.readParameters = readParameters;
+	}
+
+	/**
+	 * Download and parse the network file. Returns when the file was read
+	 * completely and all nodes and edges were handed to the builder
+	 */
+	void load () {
+		final PipedInputStream in = new PipedInputStream(BUFFER_SIZE);
+		final PipedOutputStream out;
+
+		try {
+			out = new PipedOutputStream(in);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		Thread reader = new Thread(new Runnable() {
+			public void run () {
+				InputStream source = null;
+				try {
+					source = new URL(address).openStream();
+
+					byte[] buf = new byte[8192];
+					int n = 0;
+					while ((n = source.read(buf)) != -1)
+						out.write(buf, 0, n);
+				} catch (IOException e) {
+					readError = e;
+				} finally {
+					try {
+						if (source != null)
+							source.close();
+						out.close();
+					} catch (IOException e) {
+					}
+				}
+			}
+		}, "Cobweb network reader");
+		reader.setDaemon(true);
+		reader.start();
+
+		read(in);
+
+		if (readError != null)
+			System.err.println("reading " + address + " failed: " + readError.getMessage());
+	}
+
+	/**
+	 * Parse a network that is already available as a string
+	 * 
+	 * @param network
+	 *            The network
+	 */
+	void load (String network) {
+		try {
+			read(new ByteArrayInputStream(network.getBytes("UTF-8")));
+		} catch (UnsupportedEncodingException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Parse the network from the given stream and hand the remaining elements
+	 * to the builder
+	 * 
+	 * @param in
+	 *            The stream containing the network
+	 */
+	private void read (InputStream in) {
+		try {
+			parse(in);
+		} catch (Exception e) {
+			String message = e.getMessage();
+			if (readError != null)
+				message = readError.getMessage();
+
+			JOptionPane.showMessageDialog(parent, "An error occured while reading the network-data:\n\n" + message, "Error reading network-file", 2);
+			e.printStackTrace();
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+			}
+		}
+
+		builder.finish();
+	}
+
+	/**
+	 * Parse the network from the given stream with the parser matching the
+	 * network type
+	 * 
+	 * @param in
+	 *            The stream containing the network
+	 */
+	void parse (InputStream in) throws Exception {
+		if (networkType == null)
+			System.out.println("no network type defined");
+		else if (networkType.equals("xgmml"))
+			new XGMMLStreamParser(builder, readParameters).parse(in);
+		else if (networkType.equals("graphml"))
+			new GraphMLStreamParser(builder, readParameters).parse(in);
+		else if (networkType.equals("sif"))
+			new SIFStreamParser(builder, readParameters).parse(in);
+		else
+			System.out.println("unknown network type: " + networkType);
+	}
+}
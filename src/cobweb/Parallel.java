@@ -0,0 +1,99 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A pool of worker threads, one per processor, that is shared by the graph
+ * analyses. The pool is created on first use; its threads are daemons, so
+ * they do not keep the applet alive. Tasks must not submit further tasks to
+ * the pool and wait for them.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class Parallel {
+	/**
+	 * The pool, null until it is used for the first time
+	 */
+	private static ExecutorService pool = null;
+
+	/**
+	 * Return the pool, creating it if necessary
+	 * 
+	 * @return The pool
+	 */
+	static synchronized ExecutorService getPool () {
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(threads(), new ThreadFactory() {
+				public Thread newThread (Runnable r) {
+					Thread t = new Thread(r, "Cobweb worker");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+
+		return pool;
+	}
+
+	/**
+	 * Run the given tasks on the pool and wait until all of them have
+	 * finished
+	 * 
+	 * @param tasks
+	 *            The tasks
+	 * @return The results of the tasks, in the order of the tasks
+	 * @throws InterruptedException
+	 *             If the calling thread was interrupted while waiting
+	 */
+	static <T> ArrayList<T> invokeAll (List<? extends Callable<T>> tasks) throws InterruptedException {
+		List<Future<T>> futures = getPool().invokeAll(tasks);
+
+		ArrayList<T> results = new ArrayList<T>(futures.size());
+		for (int i = 0; i < futures.size(); ++i) {
+			try {
+				results.add(futures.get(i).get());
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Return the number of threads in the pool
+	 * 
+	 * @return The number of available processors
+	 */
+	static int threads () {
+		return Runtime.getRuntime().availableProcessors();
+	}
+}
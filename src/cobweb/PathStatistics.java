@@ -0,0 +1,405 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import particlesystem.Adjacency;
+import particlesystem.GraphSnapshot;
+
+/**
+ * Diameter, average shortest path length and eccentricities of a snapshot,
+ * computed with a multi-source breadth first search: 64 searches run at once,
+ * each node holds one bit per search in a long for the searches that have
+ * seen it and for those that visit it in the current level. A level of all
+ * 64 searches thus costs one pass over the edges of the nodes it visits.
+ * Batches of sources are handed out to the worker threads one by one.
+ * 
+ * Instead of all nodes, a random sample of source nodes can be searched. The
+ * average path length is then estimated from the sampled sources together
+ * with the half width of its 95% confidence interval; the diameter lies
+ * between the largest sampled eccentricity and, for connected undirected
+ * networks, twice the smallest one.
+ * 
+ * Distances follow the edge directions. Pairs of nodes without a path are
+ * left out of all statistics.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class PathStatistics {
+	/**
+	 * The largest eccentricity of the searched sources, a lower bound of the
+	 * diameter when sources were sampled
+	 */
+	final int diameter;
+
+	/**
+	 * An upper bound of the diameter, -1 if none is known
+	 */
+	final int diameterBound;
+
+	/**
+	 * The average length of the shortest paths
+	 */
+	final double averagePathLength;
+
+	/**
+	 * Half the width of the 95% confidence interval of the average path
+	 * length, 0 for exact values
+	 */
+	final double averagePathLengthError;
+
+	/**
+	 * The eccentricity of each node, -1 for nodes that were not searched
+	 */
+	final int[] eccentricity;
+
+	/**
+	 * The number of source nodes that were searched
+	 */
+	final int samples;
+
+	/**
+	 * Compute the statistics of the given snapshot
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @param samples
+	 *            The number of randomly chosen source nodes, 0 or at least the
+	 *            number of nodes for exact values
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the workers
+	 */
+	PathStatistics (GraphSnapshot s, int samples) throws InterruptedException {
+		Adjacency a = s.getAdjacency();
+		int n = a.size();
+		boolean sampled = samples > 0 && samples < n;
+
+		// the sources, a random sample is the prefix of a partial shuffle
+		int[] sources = new int[n];
+		for (int v = 0; v < n; ++v)
+			sources[v] = v;
+		if (sampled) {
+			Random rand = new Random();
+			for (int i = 0; i < samples; ++i) {
+				int j = i + rand.nextInt(n - i);
+				int t = sources[i];
+				sources[i] = sources[j];
+				sources[j] = t;
+			}
+			sources = Arrays.copyOf(sources, samples);
+		}
+		this.samples = sources.length;
+
+		eccentricity = new int[n];
+		Arrays.fill(eccentricity, -1);
+
+		// the sums per source are only needed for the confidence interval
+		long[] sourceSums = sampled ? new long[sources.length] : null;
+		long[] sourcePairs = sampled ? new long[sources.length] : null;
+
+		AtomicInteger next = new AtomicInteger(0);
+		int batches = (sources.length + 63) >> 6;
+		ArrayList<Worker> workers = new ArrayList<Worker>();
+		for (int i = 0; i < Math.min(Parallel.threads(), Math.max(1, batches)); ++i)
+			workers.add(new Worker(a, sources, next, eccentricity, sourceSums, sourcePairs));
+
+		long sum = 0;
+		long pairs = 0;
+		for (Worker w : Parallel.invokeAll(workers)) {
+			sum += w.sum;
+			pairs += w.pairs;
+		}
+		averagePathLength = pairs == 0 ? 0 : (double) sum / pairs;
+
+		int largest = 0;
+		int smallest = Integer.MAX_VALUE;
+		for (int i = 0; i < sources.length; ++i) {
+			largest = Math.max(largest, eccentricity[sources[i]]);
+			smallest = Math.min(smallest, eccentricity[sources[i]]);
+		}
+		diameter = largest;
+
+		if (!sampled) {
+			diameterBound = largest;
+			averagePathLengthError = 0;
+		} else {
+			// every node of a connected undirected network is at most half
+			// the diameter away from the farthest node
+			if (!a.isDirected() && s.numberOfNodes() > 0 && connected(a))
+				diameterBound = Math.min(2 * smallest, n - 1);
+			else
+				diameterBound = -1;
+
+			// the path lengths of one source are correlated, so the error
+			// is estimated from the average of each source
+			int k = 0;
+			double mean = 0;
+			double squares = 0;
+			for (int i = 0; i < sources.length; ++i) {
+				if (sourcePairs[i] == 0)
+					continue;
+
+				double x = (double) sourceSums[i] / sourcePairs[i];
+				++k;
+				double d = x - mean;
+				mean += d / k;
+				squares += d * (x - mean);
+			}
+
+			if (k > 1) {
+				double correction = 1 - (double) sources.length / n;
+				averagePathLengthError = 1.96 * Math.sqrt(squares / (k - 1) / k * correction);
+			} else
+				averagePathLengthError = 0;
+		}
+	}
+
+	/**
+	 * Return true if the network is connected, ignoring the direction of the
+	 * edges
+	 * 
+	 * @param a
+	 *            The adjacency of the network
+	 * @return true if all nodes are connected, otherwise false
+	 */
+	static boolean connected (Adjacency a) {
+		int n = a.size();
+		int[] offsets = a.getOffsets();
+		int[] neighbours = a.getNeighbours();
+
+		boolean[] seen = new boolean[n];
+		int[] queue = new int[n];
+		seen[0] = true;
+		int tail = 1;
+		for (int head = 0; head < tail; ++head) {
+			int v = queue[head];
+			for (int k = offsets[v]; k < offsets[v + 1]; ++k) {
+				if (!seen[neighbours[k]]) {
+					seen[neighbours[k]] = true;
+					queue[tail++] = neighbours[k];
+				}
+			}
+		}
+
+		return tail == n;
+	}
+
+	/**
+	 * Return the number of nodes with each eccentricity as a comma separated
+	 * list of eccentricity:count pairs
+	 * 
+	 * @return The eccentricity distribution
+	 */
+	String formatEccentricities () {
+		int[] counts = new int[diameter + 1];
+		for (int v = 0; v < eccentricity.length; ++v)
+			if (eccentricity[v] >= 0)
+				counts[eccentricity[v]]++;
+
+		StringBuilder list = new StringBuilder();
+		for (int e = 0; e < counts.length; ++e) {
+			if (counts[e] == 0)
+				continue;
+			if (list.length() > 0)
+				list.append(", ");
+			list.append(e).append(':').append(counts[e]);
+		}
+
+		return list.toString();
+	}
+
+	/**
+	 * Runs the searches of the batches of 64 sources that it takes from the
+	 * shared counter and accumulates their results
+	 */
+	private static class Worker implements Callable<Worker> {
+		/**
+		 * The adjacency of the network
+		 */
+		final Adjacency a;
+
+		/**
+		 * The source nodes of all workers
+		 */
+		final int[] sources;
+
+		/**
+		 * The number of the next batch that is to be searched
+		 */
+		final AtomicInteger next;
+
+		/**
+		 * The eccentricity of each node, shared by all workers
+		 */
+		final int[] eccentricity;
+
+		/**
+		 * The summed path lengths of each source, shared by all workers, null
+		 * if not needed
+		 */
+		final long[] sourceSums;
+
+		/**
+		 * The number of nodes reached by each source, shared by all workers,
+		 * null if not needed
+		 */
+		final long[] sourcePairs;
+
+		/**
+		 * The summed lengths of the paths found by this worker
+		 */
+		long sum = 0;
+
+		/**
+		 * The number of paths found by this worker
+		 */
+		long pairs = 0;
+
+		/**
+		 * Create a worker
+		 * 
+		 * @param a
+		 *            The adjacency of the network
+		 * @param sources
+		 *            The source nodes of all workers
+		 * @param next
+		 *            The number of the next batch that is to be searched
+		 * @param eccentricity
+		 *            The eccentricity of each node, shared by all workers
+		 * @param sourceSums
+		 *            The summed path lengths of each source, may be null
+		 * @param sourcePairs
+		 *            The number of nodes reached by each source, may be null
+		 */
+		Worker (Adjacency a, int[] sources, AtomicInteger next, int[] eccentricity, long[] sourceSums, long[] sourcePairs) {
+			this.a = a;
+			this.sources = sources;
+			this.next = next;
+			this.eccentricity = eccentricity;
+			this.sourceSums = sourceSums;
+			this.sourcePairs = sourcePairs;
+		}
+
+		/**
+		 * Search batches until none is left
+		 * 
+		 * @return This worker
+		 */
+		public Worker call () {
+			int n = a.size();
+			int[] offsets = a.getSuccessorOffsets();
+			int[] successors = a.getSuccessors();
+
+			long[] seen = new long[n];
+			long[] visit = new long[n];
+			long[] visitNext = new long[n];
+			int[] frontier = new int[n];
+			int[] touched = new int[n];
+
+			int batch;
+			while ((batch = next.getAndIncrement()) << 6 < sources.length) {
+				if (Thread.currentThread().isInterrupted())
+					break;
+
+				int first = batch << 6;
+				int count = Math.min(64, sources.length - first);
+
+				Arrays.fill(seen, 0);
+				int size = 0;
+				for (int i = 0; i < count; ++i) {
+					int v = sources[first + i];
+					if (visit[v] == 0)
+						frontier[size++] = v;
+					seen[v] |= 1L << i;
+					visit[v] |= 1L << i;
+				}
+
+				// only the nodes of the current level are passed over, so a
+				// level costs the edges of its nodes, not a pass over all
+				// nodes
+				int[] farthest = new int[count];
+				for (int level = 1;; ++level) {
+					// every node passes its searches on to its successors
+					int reached = 0;
+					for (int f = 0; f < size; ++f) {
+						int v = frontier[f];
+						long bits = visit[v];
+						visit[v] = 0;
+						for (int k = offsets[v]; k < offsets[v + 1]; ++k) {
+							int w = successors[k];
+							if (visitNext[w] == 0)
+								touched[reached++] = w;
+							visitNext[w] |= bits;
+						}
+					}
+
+					// keep the searches that see a node for the first time
+					long active = 0;
+					size = 0;
+					for (int t = 0; t < reached; ++t) {
+						int w = touched[t];
+						long bits = visitNext[w] & ~seen[w];
+						visitNext[w] = 0;
+						if (bits == 0)
+							continue;
+
+						visit[w] = bits;
+						frontier[size++] = w;
+						seen[w] |= bits;
+						active |= bits;
+
+						int found = Long.bitCount(bits);
+						sum += (long) found * level;
+						pairs += found;
+
+						if (sourceSums != null) {
+							while (bits != 0) {
+								int i = first + Long.numberOfTrailingZeros(bits);
+								sourceSums[i] += level;
+								sourcePairs[i]++;
+								bits &= bits - 1;
+							}
+						}
+					}
+
+					if (active == 0)
+						break;
+
+					while (active != 0) {
+						farthest[Long.numberOfTrailingZeros(active)] = level;
+						active &= active - 1;
+					}
+				}
+
+				for (int i = 0; i < count; ++i)
+					eccentricity[sources[first + i]] = farthest[i];
+			}
+
+			return this;
+		}
+	}
+}
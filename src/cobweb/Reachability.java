@@ -0,0 +1,306 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import particlesystem.GraphSnapshot;
+
+/**
+ * An index that answers whether one node can reach another along the
+ * directed edges of a snapshot. All nodes of a strongly connected component
+ * reach each other, so the index is built on the condensation of the network.
+ * 
+ * Small condensations keep their complete transitive closure as one bitset
+ * per component. Larger ones are labelled by a depth first search: a node is
+ * reachable if it was discovered while the search was inside the start
+ * component, and it is not reachable if its finishing number lies outside the
+ * interval of finishing numbers below the start component. Only queries that
+ * neither label decides fall back to a depth first search that is pruned by
+ * the same labels.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class Reachability {
+	/**
+	 * The maximal number of components for which the transitive closure is
+	 * stored, it takes count * count / 8 bytes
+	 */
+	static final int CLOSURE_COMPONENTS = 4096;
+
+	/**
+	 * The snapshot the index was built for
+	 */
+	final GraphSnapshot snapshot;
+
+	/**
+	 * The strongly connected components of the snapshot
+	 */
+	final StrongComponents components;
+
+	/**
+	 * The index of each node id
+	 */
+	private final HashMap<String, Integer> indices;
+
+	/**
+	 * The components each component reaches as a bitset, null if the
+	 * condensation is too large
+	 */
+	private final long[][] closure;
+
+	/**
+	 * The discovery number of each component in the labelling search
+	 */
+	private final int[] discovered;
+
+	/**
+	 * The finishing number of each component in the labelling search
+	 */
+	private final int[] finished;
+
+	/**
+	 * The smallest finishing number of all components reachable from each
+	 * component
+	 */
+	private final int[] lowest;
+
+	/**
+	 * The query in which each component was last visited by the pruned search
+	 */
+	private final int[] visited;
+
+	/**
+	 * The number of the current pruned search
+	 */
+	private int query = 0;
+
+	/**
+	 * Build the reachability index of the given snapshot
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 */
+	Reachability (GraphSnapshot s) {
+		this.snapshot = s;
+		this.components = GraphFunctions.strongComponents(s);
+
+		int n = s.numberOfNodes();
+		indices = new HashMap<String, Integer>(2 * n);
+		for (int i = 0; i < n; ++i)
+			indices.put(s.getNode(i).getId(), i);
+
+		int count = components.numberOfComponents();
+		int[] offsets = components.dagOffsets;
+		int[] targets = components.dagTargets;
+
+		if (count <= CLOSURE_COMPONENTS) {
+			// components are numbered topologically, so the closure of all
+			// successors is complete before it is needed
+			closure = new long[count][];
+			int words = (count + 63) >>> 6;
+			for (int c = count - 1; c >= 0; --c) {
+				long[] bits = new long[words];
+				bits[c >>> 6] |= 1L << c;
+				for (int k = offsets[c]; k < offsets[c + 1]; ++k) {
+					long[] other = closure[targets[k]];
+					for (int w = targets[k] >>> 6; w < words; ++w)
+						bits[w] |= other[w];
+				}
+				closure[c] = bits;
+			}
+
+			discovered = finished = lowest = visited = null;
+			return;
+		}
+
+		closure = null;
+		discovered = new int[count];
+		finished = new int[count];
+		lowest = new int[count];
+		visited = new int[count];
+		Arrays.fill(discovered, -1);
+
+		int[] calls = new int[count];
+		int[] position = new int[count];
+		int discoveries = 0;
+		int finishes = 0;
+
+		for (int root = 0; root < count; ++root) {
+			if (discovered[root] != -1)
+				continue;
+
+			discovered[root] = discoveries++;
+			position[root] = offsets[root];
+			calls[0] = root;
+			int depth = 1;
+
+			while (depth > 0) {
+				int c = calls[depth - 1];
+
+				if (position[c] < offsets[c + 1]) {
+					int d = targets[position[c]++];
+					if (discovered[d] == -1) {
+						discovered[d] = discoveries++;
+						position[d] = offsets[d];
+						calls[depth++] = d;
+					}
+				} else {
+					// all successors are finished, in the tree or before
+					--depth;
+					finished[c] = finishes++;
+					int low = finished[c];
+					for (int k = offsets[c]; k < offsets[c + 1]; ++k)
+						if (lowest[targets[k]] < low)
+							low = lowest[targets[k]];
+					lowest[c] = low;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the index of the node with the given id
+	 * 
+	 * @param id
+	 *            The id of the node
+	 * @return The index of the node or -1 if there is no such node
+	 */
+	int indexOf (String id) {
+		Integer i = indices.get(id);
+		return i == null ? -1 : i;
+	}
+
+	/**
+	 * Return true if the target node can be reached from the source node
+	 * along the edges. Every node reaches itself
+	 * 
+	 * @param source
+	 *            The index of the source node
+	 * @param target
+	 *            The index of the target node
+	 * @return true if there is a path from the source to the target node
+	 */
+	boolean isReachable (int source, int target) {
+		int a = components.component[source];
+		int b = components.component[target];
+
+		if (a == b)
+			return true;
+		if (a > b)
+			return false;
+		if (closure != null)
+			return (closure[a][b >>> 6] & (1L << b)) != 0;
+
+		Boolean decided = decide(a, b);
+		if (decided != null)
+			return decided;
+
+		return search(a, b);
+	}
+
+	/**
+	 * Return true if the node with the target id can be reached from the node
+	 * with the source id along the edges
+	 * 
+	 * @param sourceId
+	 *            The id of the source node
+	 * @param targetId
+	 *            The id of the target node
+	 * @return true if there is a path from the source to the target node,
+	 *         false if there is none or one of the nodes does not exist
+	 */
+	boolean isReachable (String sourceId, String targetId) {
+		int source = indexOf(sourceId);
+		int target = indexOf(targetId);
+		if (source < 0 || target < 0)
+			return false;
+
+		return isReachable(source, target);
+	}
+
+	/**
+	 * Decide by the labels alone whether component b is reachable from
+	 * component a
+	 * 
+	 * @param a
+	 *            The start component
+	 * @param b
+	 *            The target component
+	 * @return true or false if the labels decide the query, otherwise null
+	 */
+	private Boolean decide (int a, int b) {
+		if (discovered[a] <= discovered[b] && finished[b] <= finished[a])
+			return Boolean.TRUE;
+		if (finished[b] < lowest[a] || finished[b] > finished[a])
+			return Boolean.FALSE;
+
+		return null;
+	}
+
+	/**
+	 * Search the condensation from component a for component b, skipping
+	 * every component the labels rule out
+	 * 
+	 * @param a
+	 *            The start component
+	 * @param b
+	 *            The target component
+	 * @return true if b is reachable from a
+	 */
+	private synchronized boolean search (int a, int b) {
+		int[] offsets = components.dagOffsets;
+		int[] targets = components.dagTargets;
+
+		if (++query == Integer.MAX_VALUE) {
+			Arrays.fill(visited, 0);
+			query = 1;
+		}
+
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = a;
+		visited[a] = query;
+
+		while (top > 0) {
+			int c = stack[--top];
+			for (int k = offsets[c]; k < offsets[c + 1]; ++k) {
+				int d = targets[k];
+				if (d > b || visited[d] == query)
+					continue;
+				visited[d] = query;
+
+				Boolean decided = d == b ? Boolean.TRUE : decide(d, b);
+				if (decided == Boolean.TRUE)
+					return true;
+				if (decided == null) {
+					if (top == stack.length)
+						stack = Arrays.copyOf(stack, 2 * top);
+					stack[top++] = d;
+				}
+			}
+		}
+
+		return false;
+	}
+}
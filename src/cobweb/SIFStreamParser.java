@@ -0,0 +1,93 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Parser that reads sif-data from a stream line by line and hands the nodes
+ * and edges to a network builder.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+public class SIFStreamParser {
+	/**
+	 * The builder that inserts the parsed elements into the particle system
+	 */
+	NetworkBuilder builder;
+
+	/**
+	 * Whether the graph attributes are set. Networks in sif format are always
+	 * directed
+	 */
+	boolean readParameters;
+
+	/**
+	 * Initializes the parser
+	 * 
+	 * @param builder
+	 *            The builder that inserts the parsed elements into the particle
+	 *            system
+	 * @param readParameters
+	 *            Whether the graph attributes are set
+	 */
+	SIFStreamParser (NetworkBuilder builder, boolean readParameters) {
+		this.builder = builder;
+		this.readParameters = readParameters;
+	}
+
+	/**
+	 * Read the sif-data from the given stream
+	 * 
+	 * @param in
+	 *            The stream containing the sif-data
+	 */
+	void parse (InputStream in) throws Exception {
+		if (readParameters)
+			builder.setDirected(true);
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		String line = null;
+
+		while ((line = reader.readLine()) != null) {
+			if (line.trim().length() == 0)
+				continue;
+
+			// the whole file is not known in advance, so the delimiter is
+			// determined for each line
+			String delimiter = "\t";
+			if (line.indexOf('\t') == -1)
+				delimiter = " ";
+
+			String[] elems = line.split(delimiter);
+
+			builder.addNode(elems[0], elems[0], null, null, null, null, null, null);
+
+			for (int j = 2; j < elems.length; j++) {
+				builder.addNode(elems[j], elems[j], null, null, null, null, null, null);
+				builder.addEdge(elems[0], elems[j], "1", elems[1], null, null);
+			}
+		}
+	}
+}
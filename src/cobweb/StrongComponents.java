@@ -0,0 +1,217 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.util.Arrays;
+
+import particlesystem.Adjacency;
+import particlesystem.GraphSnapshot;
+
+/**
+ * The strongly connected components of a snapshot, found with Tarjan's
+ * algorithm, and their condensation: the directed acyclic graph with one node
+ * per component and an edge wherever an edge of the network connects two
+ * components. The depth first search keeps its own stack of nodes and row
+ * positions instead of recursing, so it handles paths of any length in
+ * O(V + E).
+ * 
+ * Components are numbered in topological order: every edge of the
+ * condensation leads from a component to one with a higher number. In
+ * undirected networks the components are the connected components.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class StrongComponents {
+	/**
+	 * The snapshot the components were found in
+	 */
+	final GraphSnapshot snapshot;
+
+	/**
+	 * The component of each node
+	 */
+	final int[] component;
+
+	/**
+	 * The number of nodes in each component
+	 */
+	final int[] sizes;
+
+	/**
+	 * The row offsets of the condensation, of length number of components + 1
+	 */
+	final int[] dagOffsets;
+
+	/**
+	 * The successor components of each component in the condensation, each
+	 * row sorted and without duplicates
+	 */
+	final int[] dagTargets;
+
+	/**
+	 * Find the strongly connected components of the given snapshot
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 */
+	StrongComponents (GraphSnapshot s) {
+		this.snapshot = s;
+
+		Adjacency a = s.getAdjacency();
+		int n = a.size();
+		int[] offsets = a.getSuccessorOffsets();
+		int[] successors = a.getSuccessors();
+
+		component = new int[n];
+		int[] order = new int[n];
+		int[] low = new int[n];
+		int[] position = new int[n];
+		int[] stack = new int[n];
+		int[] calls = new int[n];
+		boolean[] onStack = new boolean[n];
+		Arrays.fill(order, -1);
+
+		int counter = 0;
+		int count = 0;
+		int top = 0;
+
+		for (int root = 0; root < n; ++root) {
+			if (order[root] != -1)
+				continue;
+
+			order[root] = low[root] = counter++;
+			position[root] = offsets[root];
+			stack[top++] = root;
+			onStack[root] = true;
+			calls[0] = root;
+			int depth = 1;
+
+			while (depth > 0) {
+				int v = calls[depth - 1];
+
+				if (position[v] < offsets[v + 1]) {
+					int w = successors[position[v]++];
+
+					if (order[w] == -1) {
+						// descend into w
+						order[w] = low[w] = counter++;
+						position[w] = offsets[w];
+						stack[top++] = w;
+						onStack[w] = true;
+						calls[depth++] = w;
+					} else if (onStack[w] && order[w] < low[v])
+						low[v] = order[w];
+				} else {
+					// all successors of v are done, return to its caller
+					--depth;
+
+					if (low[v] == order[v]) {
+						int w;
+						do {
+							w = stack[--top];
+							onStack[w] = false;
+							component[w] = count;
+						} while (w != v);
+						++count;
+					}
+
+					if (depth > 0) {
+						int u = calls[depth - 1];
+						if (low[v] < low[u])
+							low[u] = low[v];
+					}
+				}
+			}
+		}
+
+		// Tarjan's algorithm completes the components in reverse topological
+		// order
+		sizes = new int[count];
+		for (int v = 0; v < n; ++v) {
+			component[v] = count - 1 - component[v];
+			sizes[component[v]]++;
+		}
+
+		// the condensation, duplicate edges are recognised by remembering
+		// the last component that led to each target
+		int[] outOffsets = a.getOutOffsets();
+		int[] outNeighbours = a.getOutNeighbours();
+		int[] rowCounts = new int[count + 1];
+		int[] last = new int[count];
+		Arrays.fill(last, -1);
+
+		// sort the nodes by component
+		int[] memberStart = new int[count + 1];
+		for (int v = 0; v < n; ++v)
+			memberStart[component[v] + 1]++;
+		for (int c = 0; c < count; ++c)
+			memberStart[c + 1] += memberStart[c];
+		int[] byComponent = new int[n];
+		int[] next = new int[count];
+		System.arraycopy(memberStart, 0, next, 0, count);
+		for (int v = 0; v < n; ++v)
+			byComponent[next[component[v]]++] = v;
+
+		// count the distinct successors of each component
+		for (int c = 0; c < count; ++c) {
+			for (int i = memberStart[c]; i < memberStart[c + 1]; ++i) {
+				int v = byComponent[i];
+				for (int k = outOffsets[v]; k < outOffsets[v + 1]; ++k) {
+					int d = component[outNeighbours[k]];
+					if (d != c && last[d] != c) {
+						last[d] = c;
+						rowCounts[c + 1]++;
+					}
+				}
+			}
+		}
+		for (int c = 0; c < count; ++c)
+			rowCounts[c + 1] += rowCounts[c];
+
+		dagOffsets = rowCounts;
+		dagTargets = new int[dagOffsets[count]];
+		Arrays.fill(last, -1);
+		for (int c = 0; c < count; ++c) {
+			int k = dagOffsets[c];
+			for (int i = memberStart[c]; i < memberStart[c + 1]; ++i) {
+				int v = byComponent[i];
+				for (int j = outOffsets[v]; j < outOffsets[v + 1]; ++j) {
+					int d = component[outNeighbours[j]];
+					if (d != c && last[d] != c) {
+						last[d] = c;
+						dagTargets[k++] = d;
+					}
+				}
+			}
+			Arrays.sort(dagTargets, dagOffsets[c], k);
+		}
+	}
+
+	/**
+	 * Return the number of components
+	 * 
+	 * @return The number of components
+	 */
+	int numberOfComponents () {
+		return sizes.length;
+	}
+}
@@ -0,0 +1,158 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import particlesystem.Edge;
+import particlesystem.GraphSnapshot;
+import particlesystem.Node;
+
+/**
+ * A subgraph of a snapshot that is induced by a set of its nodes: it
+ * contains these nodes and every edge between them. Nodes and edges are
+ * referred to by their index in the snapshot; membership is kept in a bitset,
+ * so it can be tested in constant time.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class Subgraph {
+	/**
+	 * The snapshot the subgraph belongs to
+	 */
+	final GraphSnapshot snapshot;
+
+	/**
+	 * The indices of the nodes of the subgraph
+	 */
+	final int[] nodes;
+
+	/**
+	 * The indices of the edges of the subgraph
+	 */
+	final int[] edges;
+
+	/**
+	 * The bitset of the indices of the nodes of the subgraph
+	 */
+	final long[] members;
+
+	/**
+	 * Create the subgraph that is induced by the given nodes. Its edges are
+	 * found by scanning the outgoing edges of the nodes
+	 * 
+	 * @param s
+	 *            The snapshot
+	 * @param nodes
+	 *            The indices of the nodes, each index may occur only once
+	 * @param count
+	 *            The number of nodes in the array that belong to the subgraph
+	 */
+	Subgraph (GraphSnapshot s, int[] nodes, int count) {
+		this.snapshot = s;
+		this.nodes = new int[count];
+		System.arraycopy(nodes, 0, this.nodes, 0, count);
+
+		members = new long[(s.numberOfNodes() + 63) >> 6];
+		for (int i = 0; i < count; ++i)
+			members[nodes[i] >> 6] |= 1L << nodes[i];
+
+		int[] outOffsets = s.getAdjacency().getOutOffsets();
+		int[] outNeighbours = s.getAdjacency().getOutNeighbours();
+		int[] outEdges = s.getAdjacency().getOutEdges();
+
+		int m = 0;
+		for (int i = 0; i < count; ++i)
+			for (int k = outOffsets[nodes[i]]; k < outOffsets[nodes[i] + 1]; ++k)
+				if (contains(outNeighbours[k]))
+					++m;
+
+		edges = new int[m];
+		m = 0;
+		for (int i = 0; i < count; ++i)
+			for (int k = outOffsets[nodes[i]]; k < outOffsets[nodes[i] + 1]; ++k)
+				if (contains(outNeighbours[k]))
+					edges[m++] = outEdges[k];
+	}
+
+	/**
+	 * Return true if the node with the given index belongs to the subgraph
+	 * 
+	 * @param i
+	 *            The index of the node in the snapshot
+	 * @return true if the node belongs to the subgraph, otherwise false
+	 */
+	boolean contains (int i) {
+		return (members[i >> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Return true if the given node belongs to the subgraph
+	 * 
+	 * @param n
+	 *            The node
+	 * @return true if the node belongs to the subgraph, otherwise false
+	 */
+	boolean contains (Node n) {
+		int i = snapshot.indexOf(n);
+
+		return i != -1 && contains(i);
+	}
+
+	/**
+	 * Return the i-th edge of the subgraph
+	 * 
+	 * @param i
+	 *            The number of the edge
+	 * @return The edge
+	 */
+	Edge getEdge (int i) {
+		return snapshot.getEdge(edges[i]);
+	}
+
+	/**
+	 * Return the i-th node of the subgraph
+	 * 
+	 * @param i
+	 *            The number of the node
+	 * @return The node
+	 */
+	Node getNode (int i) {
+		return snapshot.getNode(nodes[i]);
+	}
+
+	/**
+	 * Return the number of edges of the subgraph
+	 * 
+	 * @return The number of edges
+	 */
+	int numberOfEdges () {
+		return edges.length;
+	}
+
+	/**
+	 * Return the number of nodes of the subgraph
+	 * 
+	 * @return The number of nodes
+	 */
+	int numberOfNodes () {
+		return nodes.length;
+	}
+}
@@ -0,0 +1,260 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import particlesystem.Adjacency;
+import particlesystem.GraphSnapshot;
+
+/**
+ * The triangles of a snapshot and the clustering coefficients derived from
+ * them. Edge directions, parallel edges and self-edges are ignored.
+ * 
+ * Every edge is oriented from the node of lower to the node of higher degree
+ * (ties by index), so no node has more than O(sqrt(E)) outgoing edges. Each
+ * triangle is then found exactly once, from its node of lowest degree, by
+ * intersecting the sorted outgoing rows of both ends of an outgoing edge.
+ * The nodes are handed out to the worker threads in chunks; every worker
+ * counts into its own array, which are added up at the end.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+class Triangles {
+	/**
+	 * The number of nodes a worker takes from the shared counter at once
+	 */
+	static final int CHUNK = 256;
+
+	/**
+	 * The snapshot the triangles were counted in
+	 */
+	final GraphSnapshot snapshot;
+
+	/**
+	 * The number of triangles each node belongs to
+	 */
+	final int[] triangles;
+
+	/**
+	 * The local clustering coefficient of each node: the fraction of pairs of
+	 * its neighbours that are connected, 0 for nodes with less than two
+	 * neighbours
+	 */
+	final float[] clustering;
+
+	/**
+	 * The number of triangles in the network
+	 */
+	final long numberOfTriangles;
+
+	/**
+	 * The global clustering coefficient: three times the number of triangles
+	 * divided by the number of paths of length two
+	 */
+	final double globalClustering;
+
+	/**
+	 * The local clustering coefficient averaged over all nodes
+	 */
+	final double averageClustering;
+
+	/**
+	 * Count the triangles of the given snapshot
+	 * 
+	 * @param s
+	 *            The snapshot of the network
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting for the
+	 *             workers
+	 */
+	Triangles (GraphSnapshot s) throws InterruptedException {
+		this.snapshot = s;
+
+		Adjacency a = s.getAdjacency();
+		int n = a.size();
+		int[] offsets = a.getOffsets();
+		int[] neighbours = a.getNeighbours();
+
+		// the degree without self-edges
+		int[] degree = new int[n];
+		for (int v = 0; v < n; ++v)
+			for (int k = offsets[v]; k < offsets[v + 1]; ++k)
+				if (neighbours[k] != v)
+					degree[v]++;
+
+		// orient the edges towards the higher degree, the rows stay sorted
+		int[] forwardOffsets = new int[n + 1];
+		for (int v = 0; v < n; ++v)
+			for (int k = offsets[v]; k < offsets[v + 1]; ++k)
+				if (higher(degree, neighbours[k], v))
+					forwardOffsets[v + 1]++;
+		for (int v = 0; v < n; ++v)
+			forwardOffsets[v + 1] += forwardOffsets[v];
+
+		int[] forward = new int[forwardOffsets[n]];
+		for (int v = 0, j = 0; v < n; ++v)
+			for (int k = offsets[v]; k < offsets[v + 1]; ++k)
+				if (higher(degree, neighbours[k], v))
+					forward[j++] = neighbours[k];
+
+		AtomicInteger next = new AtomicInteger(0);
+		ArrayList<Worker> workers = new ArrayList<Worker>();
+		for (int i = 0; i < Math.min(Parallel.threads(), Math.max(1, (n + CHUNK - 1) / CHUNK)); ++i)
+			workers.add(new Worker(forwardOffsets, forward, next));
+
+		triangles = new int[n];
+		long total = 0;
+		for (Worker w : Parallel.invokeAll(workers)) {
+			total += w.found;
+			for (int v = 0; v < n; ++v)
+				triangles[v] += w.triangles[v];
+		}
+		numberOfTriangles = total;
+
+		clustering = new float[n];
+		long wedges = 0;
+		double sum = 0;
+		for (int v = 0; v < n; ++v) {
+			long pairs = (long) degree[v] * (degree[v] - 1) / 2;
+			wedges += pairs;
+			if (pairs > 0) {
+				clustering[v] = (float) (triangles[v] / (double) pairs);
+				sum += clustering[v];
+			}
+		}
+
+		globalClustering = wedges == 0 ? 0 : 3.0 * numberOfTriangles / wedges;
+		averageClustering = n == 0 ? 0 : sum / n;
+	}
+
+	/**
+	 * Return true if node u comes after node v in the order by degree and
+	 * index
+	 * 
+	 * @param degree
+	 *            The degree of each node
+	 * @param u
+	 *            One node
+	 * @param v
+	 *            The other node
+	 * @return true if u has a higher degree than v or the same degree and a
+	 *         higher index
+	 */
+	static boolean higher (int[] degree, int u, int v) {
+		return degree[u] > degree[v] || (degree[u] == degree[v] && u > v);
+	}
+
+	/**
+	 * Counts the triangles of the chunks of nodes that it takes from the
+	 * shared counter
+	 */
+	private static class Worker implements Callable<Worker> {
+		/**
+		 * The row offsets of the oriented edges
+		 */
+		final int[] offsets;
+
+		/**
+		 * The targets of the oriented edges, each row sorted
+		 */
+		final int[] targets;
+
+		/**
+		 * The number of the next chunk that is to be counted
+		 */
+		final AtomicInteger next;
+
+		/**
+		 * The number of triangles found by this worker that each node
+		 * belongs to
+		 */
+		final int[] triangles;
+
+		/**
+		 * The number of triangles found by this worker
+		 */
+		long found = 0;
+
+		/**
+		 * Create a worker
+		 * 
+		 * @param offsets
+		 *            The row offsets of the oriented edges
+		 * @param targets
+		 *            The targets of the oriented edges, each row sorted
+		 * @param next
+		 *            The number of the next chunk that is to be counted
+		 */
+		Worker (int[] offsets, int[] targets, AtomicInteger next) {
+			this.offsets = offsets;
+			this.targets = targets;
+			this.next = next;
+
+			triangles = new int[offsets.length - 1];
+		}
+
+		/**
+		 * Count the triangles of chunks until none is left
+		 * 
+		 * @return This worker
+		 */
+		public Worker call () {
+			int n = offsets.length - 1;
+
+			int chunk;
+			while ((chunk = next.getAndIncrement()) * CHUNK < n) {
+				if (Thread.currentThread().isInterrupted())
+					break;
+
+				int last = Math.min(n, (chunk + 1) * CHUNK);
+				for (int v = chunk * CHUNK; v < last; ++v) {
+					for (int k = offsets[v]; k < offsets[v + 1]; ++k) {
+						int u = targets[k];
+
+						// merge the rows of v and u
+						int i = offsets[v];
+						int j = offsets[u];
+						while (i < offsets[v + 1] && j < offsets[u + 1]) {
+							if (targets[i] < targets[j])
+								++i;
+							else if (targets[i] > targets[j])
+								++j;
+							else {
+								triangles[v]++;
+								triangles[u]++;
+								triangles[targets[i]]++;
+								++found;
+								++i;
+								++j;
+							}
+						}
+					}
+				}
+			}
+
+			return this;
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package cobweb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Parser that reads XGMML-data from a stream and hands every node and edge to
+ * a network builder as soon as it was read completely.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+public class XGMMLStreamParser extends DefaultHandler {
+	/**
+	 * The builder that inserts the parsed elements into the particle system
+	 */
+	NetworkBuilder builder;
+
+	/**
+	 * Whether the graph attributes like direction and picture path are read
+	 */
+	boolean readParameters;
+
+	/**
+	 * The depth of the current element, the root element has depth 1
+	 */
+	private int depth = 0;
+
+	private boolean inNode = false;
+	private boolean inEdge = false;
+	private boolean hasGraphics = false;
+
+	// attributes of the current node
+	private String id = null;
+	private String name = null;
+	private String description = null;
+	private String picture = null;
+	private String position = null;
+	private String shape = null;
+	private String fillColor = null;
+
+	// attributes of the current edge
+	private String sId = null;
+	private String tId = null;
+	private String weight = null;
+	private String annotation = null;
+	private String edgeShape = null;
+	private String color = null;
+
+	/**
+	 * Initializes the parser
+	 * 
+	 * @param builder
+	 *            The builder that inserts the parsed elements into the particle
+	 *            system
+	 * @param readParameters
+	 *            Whether the graph attributes like direction and picture path
+	 *            are read
+	 */
+	XGMMLStreamParser (NetworkBuilder builder, boolean readParameters) {
+		this.builder = builder;
+		this.readParameters = readParameters;
+	}
+
+	/**
+	 * Read the XGMML-data from the given stream
+	 * 
+	 * @param in
+	 *            The stream containing the XGMML-data
+	 */
+	void parse (InputStream in) throws Exception {
+		SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+		parser.parse(new InputSource(in), this);
+	}
+
+	public InputSource resolveEntity (String publicId, String systemId) throws SAXException, IOException {
+		return new InputSource(new StringReader(""));
+	}
+
+	public void startElement (String uri, String localName, String qName, Attributes attributes) {
+		depth++;
+
+		if (qName.equals("graph") && depth == 1) {
+			if (readParameters) {
+				builder.setDirected("1".equals(attributes.getValue("directed")));
+
+				if (attributes.getValue("label") != null)
+					builder.getParameters().setLabel(attributes.getValue("label"));
+
+				builder.getParameters().setPicturePath(null);
+				builder.getParameters().setNeighbourhoodScript(null);
+			}
+		} else if (qName.equals("node")) {
+			inNode = true;
+			hasGraphics = false;
+			id = attributes.getValue("id");
+			name = attributes.getValue("label");
+			description = null;
+			picture = null;
+			position = null;
+			shape = null;
+			fillColor = null;
+		} else if (qName.equals("edge")) {
+			inEdge = true;
+			sId = attributes.getValue("source");
+			tId = attributes.getValue("target");
+			weight = attributes.getValue("weight");
+			annotation = attributes.getValue("label");
+			edgeShape = null;
+			color = null;
+		} else if (qName.equals("graphics")) {
+			// like the DOM parser only the first graphics tag is considered
+			if (inNode && !hasGraphics) {
+				hasGraphics = true;
+				shape = emptyToNull(attributes.getValue("type"));
+				fillColor = emptyToNull(attributes.getValue("fill"));
+			}
+		} else if (qName.equals("att")) {
+			String attName = attributes.getValue("name");
+			String value = attributes.getValue("value");
+
+			if (attName == null)
+				return;
+
+			if (inNode) {
+				if (attName.equals("description") && description == null)
+					description = value;
+				else if (attName.equals("picture") && picture == null)
+					picture = value;
+				else if (attName.equals("position") && position == null)
+					position = value;
+			} else if (inEdge) {
+				if (attName.equals("edge.shape") && edgeShape == null)
+					edgeShape = value;
+				else if (attName.equals("edge.color") && color == null)
+					color = value;
+			} else if (readParameters && depth == 2) {
+				if (attName.equals("PICTURE_PATH"))
+					builder.getParameters().setPicturePath(value);
+				else if (attName.equals("NEIGHBOURHOOD_SCRIPT"))
+					builder.getParameters().setNeighbourhoodScript(value);
+			}
+		}
+	}
+
+	public void endElement (String uri, String localName, String qName) {
+		depth--;
+
+		if (qName.equals("node") && inNode) {
+			inNode = false;
+
+			String xPos = null;
+			String yPos = null;
+			if (position != null) {
+				String[] positions = position.split(";");
+				xPos = positions[0];
+				yPos = positions[1];
+			}
+
+			builder.addNode(id, name, description, picture, shape, fillColor, xPos, yPos);
+		} else if (qName.equals("edge") && inEdge) {
+			inEdge = false;
+
+			if (color != null) {
+				try {
+					String[] colorArray = color.split(",");
+					int col = (255 << 24) | (Integer.parseInt(colorArray[0]) << 16) | (Integer.parseInt(colorArray[1]) << 8) | Integer.parseInt(colorArray[2]);
+					color = "#" + Integer.toHexString(col).substring(2);
+				} catch (Exception e) {
+					System.err.println("Wrong color format");
+				}
+			}
+
+			builder.addEdge(sId, tId, weight, annotation, edgeShape, color);
+		}
+	}
+
+	/**
+	 * Return null for empty attribute values
+	 * 
+	 * @param s
+	 *            The attribute value
+	 * @return null if the value is null or empty, otherwise the value
+	 */
+	private String emptyToNull (String s) {
+		if (s == null || s.equals(""))
+			return null;
+		else
+			return s;
+	}
+}
@@ -0,0 +1,316 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package particlesystem;
+
+/**
+ * Adjacency of the nodes of a graph structure in compressed sparse row form.
+ * The neighbours of node u are stored in neighbours[offsets[u]] to
+ * neighbours[offsets[u + 1] - 1], sorted by node index. There are three
+ * views: the outgoing edges, the incoming edges (each with the index of the
+ * edge that connects the nodes) and the neighbours in both directions
+ * without duplicates. For undirected graphs traversals use the latter.
+ * 
+ * The arrays returned by the getters are shared and must not be modified.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+public class Adjacency {
+	/**
+	 * The number of nodes
+	 */
+	final int size;
+
+	/**
+	 * Whether the edges are directed
+	 */
+	final boolean directed;
+
+	// outgoing edges
+	final int[] outOffsets;
+	final int[] outNeighbours;
+	final int[] outEdges;
+	final float[] outWeights;
+
+	// incoming edges
+	final int[] inOffsets;
+	final int[] inNeighbours;
+	final int[] inEdges;
+	final float[] inWeights;
+
+	// neighbours in both directions
+	final int[] offsets;
+	final int[] neighbours;
+
+	/**
+	 * Build the adjacency of the given structure in O(V+E)
+	 * 
+	 * @param s
+	 *            The structure
+	 */
+	Adjacency (GraphStructure s) {
+		size = s.nodes.length;
+		directed = s.directed;
+
+		int m = s.edges.length;
+		int[] edgeIds = new int[m];
+		for (int i = 0; i < m; ++i)
+			edgeIds[i] = i;
+
+		outOffsets = new int[size + 1];
+		outNeighbours = new int[m];
+		outEdges = new int[m];
+		buildRows(s.edgeSources, s.edgeTargets, edgeIds, m, outOffsets, outNeighbours, outEdges);
+		outWeights = new float[m];
+		for (int k = 0; k < m; ++k)
+			outWeights[k] = s.edgeWeights[outEdges[k]];
+
+		inOffsets = new int[size + 1];
+		inNeighbours = new int[m];
+		inEdges = new int[m];
+		buildRows(s.edgeTargets, s.edgeSources, edgeIds, m, inOffsets, inNeighbours, inEdges);
+		inWeights = new float[m];
+		for (int k = 0; k < m; ++k)
+			inWeights[k] = s.edgeWeights[inEdges[k]];
+
+		// merge the sorted out- and in-rows of every node, dropping duplicates
+		offsets = new int[size + 1];
+		int[] merged = new int[2 * m];
+		int k = 0;
+		for (int u = 0; u < size; ++u) {
+			offsets[u] = k;
+			int i = outOffsets[u], iEnd = outOffsets[u + 1];
+			int j = inOffsets[u], jEnd = inOffsets[u + 1];
+
+			while (i < iEnd || j < jEnd) {
+				int v;
+				if (j >= jEnd || (i < iEnd && outNeighbours[i] <= inNeighbours[j]))
+					v = outNeighbours[i++];
+				else
+					v = inNeighbours[j++];
+
+				if (k == offsets[u] || merged[k - 1] != v)
+					merged[k++] = v;
+			}
+		}
+		offsets[size] = k;
+
+		neighbours = new int[k];
+		System.arraycopy(merged, 0, neighbours, 0, k);
+	}
+
+	/**
+	 * Fill the rows of an adjacency with two stable counting sorts, first by
+	 * the neighbour, then by the row, so each row is sorted by neighbour
+	 * 
+	 * @param rows
+	 *            The row (node) of each entry
+	 * @param cols
+	 *            The neighbour of each entry
+	 * @param ids
+	 *            The edge id of each entry
+	 * @param m
+	 *            The number of entries
+	 * @param rowOffsets
+	 *            The row offsets that are filled, of length size + 1
+	 * @param rowCols
+	 *            The neighbours that are filled
+	 * @param rowIds
+	 *            The edge ids that are filled
+	 */
+	private void buildRows (int[] rows, int[] cols, int[] ids, int m, int[] rowOffsets, int[] rowCols, int[] rowIds) {
+		// sort the entries by neighbour
+		int[] colStart = new int[size + 1];
+		for (int i = 0; i < m; ++i)
+			colStart[cols[i] + 1]++;
+		for (int v = 0; v < size; ++v)
+			colStart[v + 1] += colStart[v];
+
+		int[] byCol = new int[m];
+		for (int i = 0; i < m; ++i)
+			byCol[colStart[cols[i]]++] = i;
+
+		// distribute them stably into their rows
+		for (int i = 0; i < m; ++i)
+			rowOffsets[rows[i] + 1]++;
+		for (int u = 0; u < size; ++u)
+			rowOffsets[u + 1] += rowOffsets[u];
+
+		int[] next = new int[size];
+		System.arraycopy(rowOffsets, 0, next, 0, size);
+		for (int k = 0; k < m; ++k) {
+			int i = byCol[k];
+			int pos = next[rows[i]]++;
+			rowCols[pos] = cols[i];
+			rowIds[pos] = ids[i];
+		}
+	}
+
+	/**
+	 * Return the edge ids of the incoming edges, row by row
+	 * 
+	 * @return The edge ids
+	 */
+	public int[] getInEdges () {
+		return inEdges;
+	}
+
+	/**
+	 * Return the source nodes of the incoming edges, row by row
+	 * 
+	 * @return The source nodes
+	 */
+	public int[] getInNeighbours () {
+		return inNeighbours;
+	}
+
+	/**
+	 * Return the offsets of the rows of the incoming edges
+	 * 
+	 * @return The offsets, of length size() + 1
+	 */
+	public int[] getInOffsets () {
+		return inOffsets;
+	}
+
+	/**
+	 * Return the weights of the incoming edges, row by row
+	 * 
+	 * @return The edge weights
+	 */
+	public float[] getInWeights () {
+		return inWeights;
+	}
+
+	/**
+	 * Return the neighbours in both directions, row by row
+	 * 
+	 * @return The neighbours
+	 */
+	public int[] getNeighbours () {
+		return neighbours;
+	}
+
+	/**
+	 * Return the offsets of the rows of the neighbours in both directions
+	 * 
+	 * @return The offsets, of length size() + 1
+	 */
+	public int[] getOffsets () {
+		return offsets;
+	}
+
+	/**
+	 * Return the edge ids of the outgoing edges, row by row
+	 * 
+	 * @return The edge ids
+	 */
+	public int[] getOutEdges () {
+		return outEdges;
+	}
+
+	/**
+	 * Return the target nodes of the outgoing edges, row by row
+	 * 
+	 * @return The target nodes
+	 */
+	public int[] getOutNeighbours () {
+		return outNeighbours;
+	}
+
+	/**
+	 * Return the offsets of the rows of the outgoing edges
+	 * 
+	 * @return The offsets, of length size() + 1
+	 */
+	public int[] getOutOffsets () {
+		return outOffsets;
+	}
+
+	/**
+	 * Return the weights of the outgoing edges, row by row
+	 * 
+	 * @return The edge weights
+	 */
+	public float[] getOutWeights () {
+		return outWeights;
+	}
+
+	/**
+	 * Return the offsets of the rows that are followed by a traversal against
+	 * the edge direction: the incoming edges for directed graphs, otherwise
+	 * both directions
+	 * 
+	 * @return The offsets, of length size() + 1
+	 */
+	public int[] getPredecessorOffsets () {
+		return directed ? inOffsets : offsets;
+	}
+
+	/**
+	 * Return the nodes that are reached by a traversal against the edge
+	 * direction, row by row
+	 * 
+	 * @return The predecessors
+	 */
+	public int[] getPredecessors () {
+		return directed ? inNeighbours : neighbours;
+	}
+
+	/**
+	 * Return the offsets of the rows that are followed by a traversal: the
+	 * outgoing edges for directed graphs, otherwise both directions
+	 * 
+	 * @return The offsets, of length size() + 1
+	 */
+	public int[] getSuccessorOffsets () {
+		return directed ? outOffsets : offsets;
+	}
+
+	/**
+	 * Return the nodes that are reached by a traversal, row by row: the
+	 * targets of the outgoing edges for directed graphs, otherwise the
+	 * neighbours in both directions
+	 * 
+	 * @return The successors
+	 */
+	public int[] getSuccessors () {
+		return directed ? outNeighbours : neighbours;
+	}
+
+	/**
+	 * Return true if the edges are directed
+	 * 
+	 * @return true if the edges are directed, otherwise false
+	 */
+	public boolean isDirected () {
+		return directed;
+	}
+
+	/**
+	 * Return the number of nodes
+	 * 
+	 * @return The number of nodes
+	 */
+	public int size () {
+		return size;
+	}
+}
@@ -171,6 +171,9 @@ public class Edge {
 	 * by the edge is computed and applied to the nodes at its ends
 	 */
 	void apply () {
+		if (!source.isVisible() || !target.isVisible())
+			return;
+
 		if (source.isFree() || target.isFree()) {
 			float a2bX = source.getPosition().x - target.getPosition().x;
 			float a2bY = source.getPosition().y - target.getPosition().y;
@@ -662,4 +665,4 @@ public class Edge {
 			hide();
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,218 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package particlesystem;
+
+/**
+ * A read-only view of the network at one structural version, together with
+ * the node positions at the time the snapshot was taken. Exports and analyses
+ * read snapshots instead of the live particle system, so they can run on any
+ * thread while the layout goes on and the network is edited.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+public class GraphSnapshot {
+	/**
+	 * The nodes and edges, shared by all snapshots of the same version
+	 */
+	final GraphStructure structure;
+
+	/**
+	 * The x-coordinates of the nodes
+	 */
+	final float[] x;
+
+	/**
+	 * The y-coordinates of the nodes
+	 */
+	final float[] y;
+
+	/**
+	 * Create a new snapshot
+	 * 
+	 * @param structure
+	 *            The nodes and edges
+	 * @param x
+	 *            The x-coordinates of the nodes, owned by the snapshot
+	 * @param y
+	 *            The y-coordinates of the nodes, owned by the snapshot
+	 */
+	GraphSnapshot (GraphStructure structure, float[] x, float[] y) {
+		this.structure = structure;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Return the adjacency of the nodes, shared by all snapshots of the same
+	 * version
+	 * 
+	 * @return The adjacency
+	 */
+	public Adjacency getAdjacency () {
+		return structure.getAdjacency();
+	}
+
+	/**
+	 * Return the i-th edge
+	 * 
+	 * @param i
+	 *            The number of the edge that is to be returned
+	 * @return The i-th edge
+	 */
+	public Edge getEdge (int i) {
+		return structure.edges[i];
+	}
+
+	/**
+	 * Return the index of the source node of the i-th edge
+	 * 
+	 * @param i
+	 *            The number of the edge
+	 * @return The index of the edge's source node
+	 */
+	public int getEdgeSource (int i) {
+		return structure.edgeSources[i];
+	}
+
+	/**
+	 * Return the index of the target node of the i-th edge
+	 * 
+	 * @param i
+	 *            The number of the edge
+	 * @return The index of the edge's target node
+	 */
+	public int getEdgeTarget (int i) {
+		return structure.edgeTargets[i];
+	}
+
+	/**
+	 * Return the i-th node
+	 * 
+	 * @param i
+	 *            The number of the node that is to be returned
+	 * @return The i-th node
+	 */
+	public Node getNode (int i) {
+		return structure.nodes[i];
+	}
+
+	/**
+	 * Return the cache for the results of graph queries of the particle
+	 * system the snapshot was taken from
+	 * 
+	 * @return The query cache
+	 */
+	public QueryCache getQueryCache () {
+		return structure.cache;
+	}
+
+	/**
+	 * Return the nodes and edges of the snapshot
+	 * 
+	 * @return The structure
+	 */
+	public GraphStructure getStructure () {
+		return structure;
+	}
+
+	/**
+	 * Return the structural version of the snapshot
+	 * 
+	 * @return The structural version
+	 */
+	public int getVersion () {
+		return structure.version;
+	}
+
+	/**
+	 * Return the x-coordinate of the i-th node
+	 * 
+	 * @param i
+	 *            The index of the node
+	 * @return The x-coordinate of the node
+	 */
+	public float getX (int i) {
+		return x[i];
+	}
+
+	/**
+	 * Return the y-coordinate of the i-th node
+	 * 
+	 * @param i
+	 *            The index of the node
+	 * @return The y-coordinate of the node
+	 */
+	public float getY (int i) {
+		return y[i];
+	}
+
+	/**
+	 * Return the index of the given node
+	 * 
+	 * @param n
+	 *            The node
+	 * @return The index of the node or -1 if the node is not part of the
+	 *         snapshot
+	 */
+	public int indexOf (Node n) {
+		return structure.indexOf(n);
+	}
+
+	/**
+	 * Return the index of the node with the given id
+	 * 
+	 * @param id
+	 *            The id of the node
+	 * @return The index of the node or -1 if there is no node with this id in
+	 *         the snapshot
+	 */
+	public int indexOf (String id) {
+		return structure.indexOf(id);
+	}
+
+	/**
+	 * Return true if the edges are directed
+	 * 
+	 * @return true if the edges are directed, otherwise false
+	 */
+	public boolean isDirected () {
+		return structure.directed;
+	}
+
+	/**
+	 * Return the number of edges
+	 * 
+	 * @return The number of edges
+	 */
+	public int numberOfEdges () {
+		return structure.edges.length;
+	}
+
+	/**
+	 * Return the number of nodes
+	 * 
+	 * @return The number of nodes
+	 */
+	public int numberOfNodes () {
+		return structure.nodes.length;
+	}
+}
@@ -0,0 +1,261 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package particlesystem;
+
+import java.util.HashMap;
+
+/**
+ * The nodes and edges of the particle system at one structural version. A
+ * structure is never changed after it was created; when nodes or edges are
+ * added or removed, the particle system creates a new one. Edges refer to
+ * their nodes by index, so the structure can be traversed without looking up
+ * node objects.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+public class GraphStructure {
+	/**
+	 * The structural version of the particle system this structure was
+	 * created from
+	 */
+	final int version;
+
+	/**
+	 * Whether the edges are directed
+	 */
+	final boolean directed;
+
+	/**
+	 * The nodes
+	 */
+	final Node[] nodes;
+
+	/**
+	 * The edges
+	 */
+	final Edge[] edges;
+
+	/**
+	 * The index of the source node of each edge
+	 */
+	final int[] edgeSources;
+
+	/**
+	 * The index of the target node of each edge
+	 */
+	final int[] edgeTargets;
+
+	/**
+	 * The weight of each edge at the time the structure was created
+	 */
+	final float[] edgeWeights;
+
+	/**
+	 * The query cache of the particle system
+	 */
+	final QueryCache cache;
+
+	/**
+	 * The adjacency of the nodes, created on demand
+	 */
+	private Adjacency adjacency = null;
+
+	/**
+	 * The index of each node id, created on demand
+	 */
+	private HashMap<String, Integer> indices = null;
+
+	/**
+	 * Create the structure of the given particle system. Has to be called
+	 * while holding the lock of the particle system
+	 * 
+	 * @param ps
+	 *            The particle system
+	 */
+	GraphStructure (ParticleSystem ps) {
+		this.version = ps.version;
+		this.directed = ps.isDirected();
+		this.cache = ps.cache;
+
+		nodes = ps.nodes.toArray(new Node[ps.nodes.size()]);
+		edges = ps.edges.toArray(new Edge[ps.edges.size()]);
+		edgeSources = new int[edges.length];
+		edgeTargets = new int[edges.length];
+		edgeWeights = new float[edges.length];
+
+		for (int i = 0; i < nodes.length; ++i)
+			nodes[i].index = i;
+
+		for (int i = 0; i < edges.length; ++i) {
+			edgeSources[i] = edges[i].source.index;
+			edgeTargets[i] = edges[i].target.index;
+			edgeWeights[i] = edges[i].weight;
+		}
+	}
+
+	/**
+	 * Return the adjacency of the nodes. It is built on first use and kept
+	 * for the lifetime of the structure, i.e. until the graph changes
+	 * 
+	 * @return The adjacency
+	 */
+	public synchronized Adjacency getAdjacency () {
+		if (adjacency == null)
+			adjacency = new Adjacency(this);
+
+		return adjacency;
+	}
+
+	/**
+	 * Return the i-th edge
+	 * 
+	 * @param i
+	 *            The number of the edge that is to be returned
+	 * @return The i-th edge
+	 */
+	public Edge getEdge (int i) {
+		return edges[i];
+	}
+
+	/**
+	 * Return the index of the source node of the i-th edge
+	 * 
+	 * @param i
+	 *            The number of the edge
+	 * @return The index of the edge's source node
+	 */
+	public int getEdgeSource (int i) {
+		return edgeSources[i];
+	}
+
+	/**
+	 * Return the index of the target node of the i-th edge
+	 * 
+	 * @param i
+	 *            The number of the edge
+	 * @return The index of the edge's target node
+	 */
+	public int getEdgeTarget (int i) {
+		return edgeTargets[i];
+	}
+
+	/**
+	 * Return the weight of the i-th edge
+	 * 
+	 * @param i
+	 *            The number of the edge
+	 * @return The edge's weight
+	 */
+	public float getEdgeWeight (int i) {
+		return edgeWeights[i];
+	}
+
+	/**
+	 * Return the i-th node
+	 * 
+	 * @param i
+	 *            The number of the node that is to be returned
+	 * @return The i-th node
+	 */
+	public Node getNode (int i) {
+		return nodes[i];
+	}
+
+	/**
+	 * Return the structural version of the particle system this structure was
+	 * created from
+	 * 
+	 * @return The structural version
+	 */
+	public int getVersion () {
+		return version;
+	}
+
+	/**
+	 * Return the index of the given node
+	 * 
+	 * @param n
+	 *            The node
+	 * @return The index of the node or -1 if the node is not part of this
+	 *         structure
+	 */
+	public int indexOf (Node n) {
+		// the index stored in the node belongs to the newest structure, older
+		// structures have to search
+		int i = n.index;
+		if (i >= 0 && i < nodes.length && nodes[i] == n)
+			return i;
+
+		for (i = 0; i < nodes.length; ++i)
+			if (nodes[i] == n)
+				return i;
+
+		return -1;
+	}
+
+	/**
+	 * Return the index of the node with the given id. The index of the ids is
+	 * built on first use and kept for the lifetime of the structure
+	 * 
+	 * @param id
+	 *            The id of the node
+	 * @return The index of the node or -1 if there is no node with this id in
+	 *         this structure
+	 */
+	public synchronized int indexOf (String id) {
+		if (indices == null) {
+			indices = new HashMap<String, Integer>(2 * nodes.length);
+			for (int i = 0; i < nodes.length; ++i)
+				indices.put(nodes[i].getId(), i);
+		}
+
+		Integer i = indices.get(id);
+		return i == null ? -1 : i;
+	}
+
+	/**
+	 * Return true if the edges are directed
+	 * 
+	 * @return true if the edges are directed, otherwise false
+	 */
+	public boolean isDirected () {
+		return directed;
+	}
+
+	/**
+	 * Return the number of edges
+	 * 
+	 * @return The number of edges
+	 */
+	public int numberOfEdges () {
+		return edges.length;
+	}
+
+	/**
+	 * Return the number of nodes
+	 * 
+	 * @return The number of nodes
+	 */
+	public int numberOfNodes () {
+		return nodes.length;
+	}
+}
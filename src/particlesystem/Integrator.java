@@ -152,7 +152,7 @@ public class Integrator {
 		// save original position and velocities
 		for (int i = nodeSize - 1; i >= 0; i--) {
 			n = s.nodes.get(i);
-			if (n.isFree()) {
+			if (n.isMoving()) {
 				(originalPositions.get(i)).set(n.position);
 				(originalVelocities.get(i)).set(n.velocity);
 			}
@@ -166,7 +166,7 @@ public class Integrator {
 		// save the intermediate forces
 		for (int i = nodeSize - 1; i >= 0; i--) {
 			n = s.nodes.get(i);
-			if (n.isFree()) {
+			if (n.isMoving()) {
 				(k1Forces.get(i)).set(n.force);
 				(k1Velocities.get(i)).set(n.velocity);
 			}
@@ -177,7 +177,7 @@ public class Integrator {
 		// get k2 values
 		for (int i = nodeSize - 1; i >= 0; i--) {
 			n = s.nodes.get(i);
-			if (n.isFree()) {
+			if (n.isMoving()) {
 				originalPosition = originalPositions.get(i);
 				k1Velocity = k1Velocities.get(i);
 
@@ -197,7 +197,7 @@ public class Integrator {
 		// save the intermediate forces
 		for (int i = nodeSize - 1; i >= 0; i--) {
 			n = s.nodes.get(i);
-			if (n.isFree()) {
+			if (n.isMoving()) {
 				(k2Forces.get(i)).set(n.force);
 				(k2Velocities.get(i)).set(n.velocity);
 			}
@@ -209,7 +209,7 @@ public class Integrator {
 		// get k3 values
 		for (int i = nodeSize - 1; i >= 0; i--) {
 			n = s.nodes.get(i);
-			if (n.isFree()) {
+			if (n.isMoving()) {
 				originalPosition = originalPositions.get(i);
 				k2Velocity = k2Velocities.get(i);
 
@@ -229,7 +229,7 @@ public class Integrator {
 		// save the intermediate forces
 		for (int i = nodeSize - 1; i >= 0; i--) {
 			n = s.nodes.get(i);
-			if (n.isFree()) {
+			if (n.isMoving()) {
 				(k3Forces.get(i)).set(n.force);
 				(k3Velocities.get(i)).set(n.velocity);
 			}
@@ -241,7 +241,7 @@ public class Integrator {
 		// get k4 values
 		for (int i = nodeSize - 1; i >= 0; i--) {
 			n = s.nodes.get(i);
-			if (n.isFree()) {
+			if (n.isMoving()) {
 				originalPosition = originalPositions.get(i);
 				k3Velocity = k3Velocities.get(i);
 
@@ -262,7 +262,7 @@ public class Integrator {
 		// save the intermediate forces
 		for (int i = nodeSize - 1; i >= 0; i--) {
 			n = s.nodes.get(i);
-			if (n.isFree()) {
+			if (n.isMoving()) {
 				(k4Forces.get(i)).set(n.force);
 				(k4Velocities.get(i)).set(n.velocity);
 			}
@@ -271,7 +271,7 @@ public class Integrator {
 		// put them all together and what do you get?
 		for (int i = nodeSize - 1; i >= 0; i--) {
 			n = s.nodes.get(i);
-			if (n.isFree()) {
+			if (n.isMoving()) {
 				// update position
 				originalPosition = originalPositions.get(i);
 				k1Velocity = k1Velocities.get(i);
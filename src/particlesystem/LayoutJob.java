@@ -0,0 +1,145 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package particlesystem;
+
+/**
+ * Computes the layout on a worker thread until the given time is used up or
+ * the layout has converged. The positions are published after every step, so
+ * the layout can be drawn while it is computed. The job can be cancelled at
+ * any time.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+public class LayoutJob extends Thread {
+	/**
+	 * The particle system whose layout is computed
+	 */
+	ParticleSystem ps;
+
+	/**
+	 * The time in milliseconds that may be spent
+	 */
+	long timeBudget;
+
+	/**
+	 * The mean kinetic energy at which the layout is regarded as converged
+	 */
+	float energyTarget;
+
+	/**
+	 * The time when the job was started
+	 */
+	private volatile long startTime = 0;
+
+	/**
+	 * The number of steps performed so far
+	 */
+	private volatile int ticks = 0;
+
+	private volatile boolean cancelled = false;
+	private volatile boolean finished = false;
+
+	/**
+	 * Initializes the job
+	 * 
+	 * @param ps
+	 *            The particle system whose layout is computed
+	 * @param timeBudget
+	 *            The time in milliseconds that may be spent
+	 * @param energyTarget
+	 *            The mean kinetic energy at which the layout is regarded as
+	 *            converged
+	 */
+	public LayoutJob (ParticleSystem ps, long timeBudget, float energyTarget) {
+		super("Cobweb layout job");
+		setDaemon(true);
+
+		this.ps = ps;
+		this.timeBudget = timeBudget;
+		this.energyTarget = energyTarget;
+	}
+
+	public void run () {
+		startTime = System.currentTimeMillis();
+		long end = startTime + timeBudget;
+
+		while (!cancelled && System.currentTimeMillis() < end) {
+			ps.tick();
+			ps.publishPositions();
+			ticks++;
+
+			if (ticks >= ParticleSystem.MIN_RELAX_TICKS && ps.getKineticEnergy() <= energyTarget)
+				break;
+		}
+
+		finished = true;
+	}
+
+	/**
+	 * Stop the job after the current step
+	 */
+	public void cancel () {
+		cancelled = true;
+	}
+
+	/**
+	 * Return the share of the time budget that is used up
+	 * 
+	 * @return A value between 0 and 1
+	 */
+	public float getProgress () {
+		if (finished)
+			return 1;
+		if (startTime == 0 || timeBudget <= 0)
+			return 0;
+
+		return Math.min(1, (System.currentTimeMillis() - startTime) / (float) timeBudget);
+	}
+
+	/**
+	 * Return the number of steps performed so far
+	 * 
+	 * @return The number of steps
+	 */
+	public int getTicks () {
+		return ticks;
+	}
+
+	/**
+	 * Return true if the job was cancelled
+	 * 
+	 * @return true if the job was cancelled, otherwise false
+	 */
+	public boolean isCancelled () {
+		return cancelled;
+	}
+
+	/**
+	 * Return true if the job has stopped, because it has converged, used up
+	 * its time or was cancelled
+	 * 
+	 * @return true if the job has stopped, otherwise false
+	 */
+	public boolean isFinished () {
+		return finished;
+	}
+}
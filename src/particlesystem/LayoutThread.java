@@ -0,0 +1,146 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package particlesystem;
+
+/**
+ * Runs the particle system on its own thread at its own rate, independent of
+ * the frame rate of the applet. After every step the node positions are
+ * published to the position buffer of the particle system. The thread can be
+ * paused while another thread, like a layout job, runs the particle system.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+public class LayoutThread extends Thread {
+	/**
+	 * The particle system that is run
+	 */
+	ParticleSystem ps;
+
+	/**
+	 * The minimal time between two steps in milliseconds
+	 */
+	long interval;
+
+	/**
+	 * Whether the thread keeps running
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Whether the thread waits instead of performing steps
+	 */
+	private boolean paused = false;
+
+	/**
+	 * Whether the thread is performing a step at the moment
+	 */
+	private boolean stepping = false;
+
+	/**
+	 * Initializes the thread
+	 * 
+	 * @param ps
+	 *            The particle system that is run
+	 * @param ticksPerSecond
+	 *            The maximal number of steps per second, 0 for no limit
+	 */
+	public LayoutThread (ParticleSystem ps, int ticksPerSecond) {
+		super("Cobweb layout");
+		setDaemon(true);
+
+		this.ps = ps;
+		this.interval = ticksPerSecond > 0 ? 1000 / ticksPerSecond : 0;
+		this.running = true;
+	}
+
+	public void run () {
+		while (running) {
+			synchronized (this) {
+				while (paused && running) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+					}
+				}
+
+				if (!running)
+					break;
+
+				stepping = true;
+			}
+
+			long start = System.currentTimeMillis();
+
+			try {
+				ps.tick();
+				ps.publishPositions();
+			} finally {
+				synchronized (this) {
+					stepping = false;
+					notifyAll();
+				}
+			}
+
+			long wait = interval - (System.currentTimeMillis() - start);
+			if (wait > 0) {
+				try {
+					sleep(wait);
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stop performing steps until proceed() is called. Returns after the
+	 * current step is completed, so the particle system is not run by this
+	 * thread from then on
+	 */
+	public synchronized void pause () {
+		paused = true;
+
+		while (stepping) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Continue performing steps after the thread was paused
+	 */
+	public synchronized void proceed () {
+		paused = false;
+		notifyAll();
+	}
+
+	/**
+	 * Stop the thread after the current step
+	 */
+	public void shutdown () {
+		running = false;
+		interrupt();
+	}
+}
@@ -69,6 +69,11 @@ public class Node {
 	 */
 	int shape;
 
+	/**
+	 * The factor by which the node's symbol is scaled when it is drawn
+	 */
+	float size = 1;
+
 	/**
 	 * The position of the node
 	 */
@@ -110,6 +115,17 @@ public class Node {
 	 */
 	PImage img;
 
+	/**
+	 * The index of the node in the newest structure of the particle system
+	 */
+	int index = -1;
+
+	/**
+	 * The element representing the node in the connected components of the
+	 * particle system
+	 */
+	int component = -1;
+
 	/**
 	 * Create a new node
 	 * 
@@ -341,6 +357,15 @@ public class Node {
 		return shape;
 	}
 
+	/**
+	 * Return the factor by which the node's symbol is scaled
+	 * 
+	 * @return The scale factor of the node's symbol
+	 */
+	public float getSize () {
+		return size;
+	}
+
 	/**
 	 * Return the node's shape as a string
 	 * 
@@ -393,7 +418,8 @@ public class Node {
 	}
 
 	/**
-	 * Set the node to invisible
+	 * Set the node to invisible. Invisible nodes are left out of the layout,
+	 * neither forces act on them nor do they move
 	 */
 	public void hide () {
 		visible = false;
@@ -431,6 +457,16 @@ public class Node {
 		return !fixed;
 	}
 
+	/**
+	 * Return true if the node takes part in the layout, i.e. it is neither
+	 * fixed nor invisible
+	 * 
+	 * @return true if the integrator moves the node, otherwise false
+	 */
+	boolean isMoving () {
+		return !fixed && visible;
+	}
+
 	/**
 	 * Return true if the node is highlighted
 	 * 
@@ -526,6 +562,16 @@ public class Node {
 		shape = s;
 	}
 
+	/**
+	 * Set the factor by which the node's symbol is scaled
+	 * 
+	 * @param f
+	 *            The scale factor of the node's symbol
+	 */
+	public void setSize (float f) {
+		size = f;
+	}
+
 	/**
 	 * Set the node to visible
 	 */
@@ -539,6 +585,19 @@ public class Node {
 	 * @return The GraphML representation of the node
 	 */
 	public String toGraphML () {
+		return toGraphML(getPosition().getX(), getPosition().getY());
+	}
+
+	/**
+	 * Return a GraphML representation of the node at the given position
+	 * 
+	 * @param x
+	 *            The x-coordinate of the node
+	 * @param y
+	 *            The y-coordinate of the node
+	 * @return The GraphML representation of the node
+	 */
+	public String toGraphML (float x, float y) {
 		String graphml = "";
 
 		graphml += "<node id=\"" + getId() + "\">\n";
@@ -557,8 +616,8 @@ public class Node {
 		if (getPictureName() != null)
 			graphml += "\t<data key=\"picture\">" + getPictureName() + "</data>\n";
 
-		graphml += "\t<data key=\"x\">" + getPosition().getX() + "</data>\n";
-		graphml += "\t<data key=\"y\">" + getPosition().getY() + "</data>\n";
+		graphml += "\t<data key=\"x\">" + x + "</data>\n";
+		graphml += "\t<data key=\"y\">" + y + "</data>\n";
 
 		graphml += "</node>\n";
 
@@ -571,6 +630,19 @@ public class Node {
 	 * @return The XGMML representation of the node
 	 */
 	public String toXGMML () {
+		return toXGMML(getPosition().getX(), getPosition().getY());
+	}
+
+	/**
+	 * Return a XGMML representation of the node at the given position
+	 * 
+	 * @param x
+	 *            The x-coordinate of the node
+	 * @param y
+	 *            The y-coordinate of the node
+	 * @return The XGMML representation of the node
+	 */
+	public String toXGMML (float x, float y) {
 		String xgmml = "";
 
 		xgmml += "<node id=\"" + getId() + "\" label=\"" + getName() + "\">\n";
@@ -583,7 +655,7 @@ public class Node {
 		if (getPictureName() != null)
 			xgmml += "\t<att name=\"picture\" value=\"" + getPictureName() + "\"/>\n";
 
-		xgmml += "\t<att name=\"position\" value=\"" + (int) getPosition().getX() + ";" + (int) getPosition().getY() + "\"/>\n";
+		xgmml += "\t<att name=\"position\" value=\"" + (int) x + ";" + (int) y + "\"/>\n";
 
 		xgmml += "</node>\n";
 
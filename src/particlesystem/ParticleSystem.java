@@ -21,7 +21,9 @@
 package particlesystem;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Makes up the particle system that contains all edges, nodes and repulsions
@@ -35,6 +37,12 @@ public class ParticleSystem {
 	 */
 	final static float DEFAULT_DRAG = 0.001f;
 
+	/**
+	 * The number of ticks that relax() performs at least before it checks for
+	 * convergence
+	 */
+	final static int MIN_RELAX_TICKS = 10;
+
 	/**
 	 * The list of all nodes in the particle system
 	 */
@@ -70,6 +78,50 @@ public class ParticleSystem {
 	 */
 	boolean directed;
 
+	/**
+	 * The structural version, increased whenever nodes or edges are added or
+	 * removed
+	 */
+	volatile int version;
+
+	/**
+	 * The results of graph queries for the current version
+	 */
+	final QueryCache cache = new QueryCache(256, 1000000);
+
+	/**
+	 * The structure of the current version, created on demand
+	 */
+	GraphStructure structure;
+
+	/**
+	 * The triple buffer the node positions are published to
+	 */
+	PositionBuffer positions;
+
+	/**
+	 * Modifications handed in by other threads, they are run at the beginning
+	 * of the next step
+	 */
+	ConcurrentLinkedQueue<Runnable> commands;
+
+	/**
+	 * The connected components, updated when nodes and edges are added and
+	 * rebuilt on demand after removals
+	 */
+	UnionFind components;
+
+	/**
+	 * Whether the connected components are up to date
+	 */
+	boolean componentsValid;
+
+	/**
+	 * The sizes of the connected components in ascending order, null if they
+	 * have changed since they were last requested
+	 */
+	int[] componentSizes;
+
 	/**
 	 * Initializes the particle system with the default drag value
 	 */
@@ -91,6 +143,91 @@ public class ParticleSystem {
 		this.repulsions = new ArrayList<Repulsion>();
 		this.drag = drag;
 		this.directed = false;
+		this.version = 0;
+		this.structure = null;
+		this.positions = new PositionBuffer();
+		this.commands = new ConcurrentLinkedQueue<Runnable>();
+		this.components = new UnionFind(0);
+		this.componentsValid = true;
+		this.componentSizes = null;
+	}
+
+	/**
+	 * Add an edge that was created outside of the particle system
+	 * 
+	 * @param e
+	 *            The edge
+	 * @return true if the edge was added, false if one of its nodes is not in
+	 *         the particle system or an edge with the same source- and
+	 *         target-nodes is already present
+	 */
+	public synchronized boolean addEdge (Edge e) {
+		if (!holdsNode(e.getSource()) || !holdsNode(e.getTarget()) || containsEdge(e))
+			return false;
+
+		Node source = e.getSource();
+		Node target = e.getTarget();
+
+		source.decreaseGravity();
+		target.increaseGravity();
+		int edgeCount = decreaseEdgeStrength(source);
+
+		if (!source.equals(target)) // for self-edges the edge is not
+			// counted twice
+			edgeCount += decreaseEdgeStrength(target);
+
+		for (int i = 0; i < edgeCount; ++i)
+			e.decreaseEdgeStrength();
+
+		edges.add(e);
+		version++;
+
+		if (componentsValid && components.union(source.component, target.component))
+			componentSizes = null;
+
+		return true;
+	}
+
+	/**
+	 * Add a node that was created outside of the particle system
+	 * 
+	 * @param n
+	 *            The node
+	 * @return true if the node was added, false if a node with the same id is
+	 *         already present
+	 */
+	public synchronized boolean addNode (Node n) {
+		if (containsNode(n.getId()))
+			return false;
+
+		nodes.add(n);
+		version++;
+
+		if (componentsValid) {
+			n.component = components.add();
+			componentSizes = null;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Run the commands that were handed in by other threads since the last
+	 * step. Commands that are handed in by these commands run in the next
+	 * step
+	 */
+	void applyCommands () {
+		Runnable command = null;
+		int count = commands.size();
+
+		for (int i = 0; i < count && (command = commands.poll()) != null; ++i) {
+			try {
+				command.run();
+			} catch (RuntimeException e) {
+				// a failing command must not stop the particle system
+				e.printStackTrace();
+			}
+		}
 	}
 
 	/**
@@ -110,23 +247,11 @@ public class ParticleSystem {
 			n.force.add(n.velocity.getX() * -drag, n.velocity.getY() * -drag);
 		}
 
-		for (int i = 0; i < edges.size(); i++) {
-			try {
-				Edge e = edges.get(i);
-				e.apply();
-			} catch (NullPointerException e) {
-				break;
-			}
-		}
+		for (int i = 0; i < edges.size(); i++)
+			edges.get(i).apply();
 
-		for (int i = 0; i < repulsions.size(); i++) {
-			try {
-				Repulsion r = repulsions.get(i);
-				r.apply();
-			} catch (NullPointerException e) {
-				break;
-			}
-		}
+		for (int i = 0; i < repulsions.size(); i++)
+			repulsions.get(i).apply();
 	}
 
 	/**
@@ -192,7 +317,7 @@ public class ParticleSystem {
 	/**
 	 * Deselect all Nodes
 	 */
-	public void deselectAllNodes () {
+	public synchronized void deselectAllNodes () {
 		for (int i = 0; i < numberOfSelectedNodes(); ++i)
 			getSelectedNode(i).dehighlight();
 
@@ -205,11 +330,29 @@ public class ParticleSystem {
 	 * @param n
 	 *            The node that is deselected
 	 */
-	public void deselectNode (Node n) {
+	public synchronized void deselectNode (Node n) {
 		n.dehighlight();
 		selectedNodes.remove(n);
 	}
 
+	/**
+	 * Return the sizes of the connected components, ignoring the direction of
+	 * the edges
+	 * 
+	 * @return The sizes of the components in ascending order
+	 */
+	public synchronized int[] getComponentSizes () {
+		if (!componentsValid)
+			rebuildComponents();
+
+		if (componentSizes == null) {
+			componentSizes = components.getSetSizes();
+			Arrays.sort(componentSizes);
+		}
+
+		return componentSizes.clone();
+	}
+
 	/**
 	 * Return the i-th edge in the particle system
 	 * 
@@ -221,6 +364,31 @@ public class ParticleSystem {
 		return edges.get(i);
 	}
 
+	/**
+	 * Return the mean kinetic energy of the moving nodes in the particle
+	 * system. It is used to decide whether the layout has converged
+	 * 
+	 * @return The mean kinetic energy of the moving nodes, 0 if all nodes are
+	 *         fixed or invisible
+	 */
+	public float getKineticEnergy () {
+		float energy = 0;
+		int free = 0;
+
+		for (int i = 0; i < nodes.size(); ++i) {
+			Node n = nodes.get(i);
+			if (n.isMoving()) {
+				energy += 0.5f * (n.velocity.x * n.velocity.x + n.velocity.y * n.velocity.y);
+				free++;
+			}
+		}
+
+		if (free == 0)
+			return 0;
+
+		return energy / free;
+	}
+
 	/**
 	 * Return the i-th node in the particle system
 	 * 
@@ -248,6 +416,15 @@ public class ParticleSystem {
 		return null;
 	}
 
+	/**
+	 * Return the triple buffer the node positions are published to
+	 * 
+	 * @return The position buffer
+	 */
+	public PositionBuffer getPositionBuffer () {
+		return positions;
+	}
+
 	/**
 	 * Return the i-th repulsion in the particle system
 	 * 
@@ -266,10 +443,91 @@ public class ParticleSystem {
 	 *            The number of the selected node that is to be returned
 	 * @return The i-th selected node in the particle system
 	 */
-	public Node getSelectedNode (int i) {
+	public synchronized Node getSelectedNode (int i) {
 		return selectedNodes.get(i);
 	}
 
+	/**
+	 * Return a copy of the list of selected nodes
+	 * 
+	 * @return The selected nodes
+	 */
+	public synchronized ArrayList<Node> getSelectedNodes () {
+		return new ArrayList<Node>(selectedNodes);
+	}
+
+	/**
+	 * Return a read-only snapshot of the nodes, edges and node positions.
+	 * The snapshot never changes, so it can be read by any thread for as long
+	 * as needed without blocking the particle system. Snapshots of the same
+	 * structural version share their node and edge arrays, only the positions
+	 * are copied
+	 * 
+	 * @return The snapshot
+	 */
+	public GraphSnapshot getSnapshot () {
+		GraphSnapshot s = positions.snapshot();
+
+		if (s == null || s.getVersion() != version) {
+			// the published positions are outdated, take the current ones
+			synchronized (this) {
+				GraphStructure structure = getStructure();
+				int n = structure.nodes.length;
+				float[] x = new float[n];
+				float[] y = new float[n];
+
+				for (int i = 0; i < n; ++i) {
+					x[i] = structure.nodes[i].position.x;
+					y[i] = structure.nodes[i].position.y;
+				}
+
+				s = new GraphSnapshot(structure, x, y);
+			}
+		}
+
+		return s;
+	}
+
+	/**
+	 * Return the structure of the particle system at its current version
+	 * 
+	 * @return The current structure
+	 */
+	public synchronized GraphStructure getStructure () {
+		if (structure == null || structure.version != version)
+			structure = new GraphStructure(this);
+
+		return structure;
+	}
+
+	/**
+	 * Return the structural version of the particle system. It is increased
+	 * by every change of the nodes, the edges, their direction or weights,
+	 * so results computed for one version stay valid as long as the version
+	 * is the same
+	 * 
+	 * @return The structural version
+	 */
+	public int getVersion () {
+		return version;
+	}
+
+	/**
+	 * Return true if the given node itself is in the particle system. Unlike
+	 * containsNode() a different node with the same id does not count
+	 * 
+	 * @param n
+	 *            The node
+	 * @return true if the node is in the particle system, otherwise false
+	 */
+	boolean holdsNode (Node n) {
+		for (int i = 0; i < nodes.size(); ++i)
+			if (nodes.get(i) == n)
+				return true;
+
+		return false;
+	}
+
 	/**
 	 * Increases the strength of all edges of the given node by one step
 	 * 
@@ -282,6 +540,28 @@ public class ParticleSystem {
 				getEdge(i).increaseEdgeStrength();
 	}
 
+	/**
+	 * Mark the connected components as outdated, they are rebuilt when they
+	 * are requested the next time
+	 */
+	void invalidateComponents () {
+		componentsValid = false;
+		componentSizes = null;
+	}
+
+	/**
+	 * Hand in a modification of the particle system or its elements. The
+	 * command is run at the beginning of the next step by the thread that
+	 * runs the particle system, so it never interferes with a step or with
+	 * drawing. May be called from any thread
+	 * 
+	 * @param command
+	 *            The modification
+	 */
+	public void invokeLater (Runnable command) {
+		commands.add(command);
+	}
+
 	/**
 	 * Return true if the edges in the particle system are directed
 	 * 
@@ -317,21 +597,9 @@ public class ParticleSystem {
 	public Edge makeEdge (Node source, Node target, float weight, String annotation, String shape, String color, float strength, float damping, float restLength) {
 		Edge e = new Edge(source, target, weight, annotation, shape, isDirected(), color, strength, damping, restLength);
 
-		if (!containsEdge(e)) {
-			source.decreaseGravity();
-			target.increaseGravity();
-			int edgeCount = decreaseEdgeStrength(source);
-
-			if (!source.equals(target)) // for self-edges the edge is not
-				// counted twice
-				edgeCount += decreaseEdgeStrength(target);
-
-			for (int i = 0; i < edgeCount; ++i)
-				e.decreaseEdgeStrength();
-
-			edges.add(e);
+		if (addEdge(e))
 			return e;
-		} else
+		else
 			return null;
 	}
 
@@ -355,10 +623,9 @@ public class ParticleSystem {
 	 */
 	public Node makeNode (String id, String name, String description, String picture, String picturePath, String shape, String color) {
 		Node n = new Node(id, name, description, picture, picturePath, shape, color);
-		if (!containsNode(n.getId())) {
-			nodes.add(n);
+		if (addNode(n))
 			return n;
-		} else
+		else
 			return null;
 	}
 
@@ -375,7 +642,7 @@ public class ParticleSystem {
 	 *            The minimal distance that is assumed between the nodes
 	 * @return The new repulsion
 	 */
-	public Repulsion makeRepulsion (Node a, Node b, float strength, float minDistance) {
+	public synchronized Repulsion makeRepulsion (Node a, Node b, float strength, float minDistance) {
 		Repulsion r = new Repulsion(a, b, strength, minDistance);
 
 		if (!repulsions.contains(r))
@@ -384,6 +651,19 @@ public class ParticleSystem {
 		return r;
 	}
 
+	/**
+	 * Return the number of connected components, ignoring the direction of
+	 * the edges
+	 * 
+	 * @return The number of connected components
+	 */
+	public synchronized int numberOfComponents () {
+		if (!componentsValid)
+			rebuildComponents();
+
+		return components.numberOfSets();
+	}
+
 	/**
 	 * Return the number of edges in the particle system
 	 * 
@@ -416,22 +696,77 @@ public class ParticleSystem {
 	 * 
 	 * @return The number of selected nodes in the particle system
 	 */
-	public int numberOfSelectedNodes () {
+	public synchronized int numberOfSelectedNodes () {
 		return selectedNodes.size();
 	}
 
+	/**
+	 * Write the current node positions into the position buffer, so they can
+	 * be read while the next steps are performed
+	 */
+	public synchronized void publishPositions () {
+		positions.publish(getStructure());
+	}
+
+	/**
+	 * Compute the connected components from scratch
+	 */
+	void rebuildComponents () {
+		components = new UnionFind(nodes.size());
+
+		for (int i = 0; i < nodes.size(); ++i)
+			nodes.get(i).component = i;
+
+		for (int i = 0; i < edges.size(); ++i)
+			components.union(edges.get(i).source.component, edges.get(i).target.component);
+
+		componentsValid = true;
+		componentSizes = null;
+	}
+
+	/**
+	 * Perform steps of the integrator until the given time is used up or the
+	 * mean kinetic energy of the free nodes drops below the given target,
+	 * whichever happens first
+	 * 
+	 * @param timeBudget
+	 *            The time in milliseconds that may be spent
+	 * @param energyTarget
+	 *            The mean kinetic energy at which the layout is regarded as
+	 *            converged
+	 * @return The number of steps that were performed
+	 */
+	public int relax (long timeBudget, float energyTarget) {
+		long end = System.currentTimeMillis() + timeBudget;
+		int ticks = 0;
+
+		while (System.currentTimeMillis() < end) {
+			tick();
+			ticks++;
+
+			if (ticks >= MIN_RELAX_TICKS && getKineticEnergy() <= energyTarget)
+				break;
+		}
+
+		return ticks;
+	}
+
 	/**
 	 * Remove the given edge from the particle system
 	 * 
 	 * @param e
 	 *            The edge that is to be removed
 	 */
-	public void removeEdge (Edge e) {
+	public synchronized void removeEdge (Edge e) {
 		e.getSource().increaseGravity();
 		e.getTarget().decreaseGravity();
 		increaseEdgeStrength(e.getSource());
 		increaseEdgeStrength(e.getTarget());
 		edges.remove(e);
+		version++;
+
+		// removals cannot be undone in the union-find structure
+		invalidateComponents();
 	}
 
 	/**
@@ -465,7 +800,7 @@ public class ParticleSystem {
 	 * @param n
 	 *            The node that is to be removed
 	 */
-	public void removeNode (Node n) {
+	public synchronized void removeNode (Node n) {
 		ArrayList<Repulsion> removeRepulsions = new ArrayList<Repulsion>();
 
 		for (int i = 0; i < numberOfRepulsions(); ++i) {
@@ -493,6 +828,9 @@ public class ParticleSystem {
 			selectedNodes.remove(n);
 
 		nodes.remove(n);
+		version++;
+
+		invalidateComponents();
 	}
 
 	/**
@@ -501,7 +839,7 @@ public class ParticleSystem {
 	 * @param i
 	 *            The number of the repulsion that is to be removed
 	 */
-	public void removeRepulsion (int i) {
+	public synchronized void removeRepulsion (int i) {
 		repulsions.remove(i);
 	}
 
@@ -511,7 +849,7 @@ public class ParticleSystem {
 	 * @param r
 	 *            The repulsion that is to be removed
 	 */
-	public void removeRepulsion (Repulsion r) {
+	public synchronized void removeRepulsion (Repulsion r) {
 		repulsions.remove(r);
 	}
 
@@ -521,7 +859,7 @@ public class ParticleSystem {
 	 * @param n
 	 *            The node that is selected
 	 */
-	public void selectNode (Node n) {
+	public synchronized void selectNode (Node n) {
 		n.highlight();
 		selectedNodes.add(n);
 	}
@@ -532,19 +870,31 @@ public class ParticleSystem {
 	 * @param d
 	 *            true if the edges should be directed
 	 */
-	public void setDirected (boolean d) {
+	public synchronized void setDirected (boolean d) {
 		directed = d;
+		version++;
+	}
+
+	/**
+	 * Set the weight of the given edge. Weights are part of the structure
+	 * that is used for analyses, so the structural version changes
+	 * 
+	 * @param e
+	 *            The edge
+	 * @param w
+	 *            The new weight
+	 */
+	public synchronized void setEdgeWeight (Edge e, float w) {
+		e.setWeight(w);
+		version++;
 	}
 
 	/**
 	 * Perform one step of the iterator
 	 */
-	public void tick () {
-		try {
-			integrator.step();
-		} catch (IndexOutOfBoundsException e) {
-			System.err.println(e.getMessage());
-		}
+	public synchronized void tick () {
+		applyCommands();
+		integrator.step();
 	}
 
 }
\ No newline at end of file
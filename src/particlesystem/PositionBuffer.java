@@ -0,0 +1,194 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package particlesystem;
+
+/**
+ * Triple buffer for the node positions computed by the particle system. The
+ * thread that runs the particle system writes the positions after each
+ * complete step into a back buffer and swaps it to the front. Readers only
+ * see the front buffer, so they never observe positions of a half finished
+ * step. While a reader holds the front buffer no swap takes place; the
+ * finished step is kept as the ready buffer instead and becomes the front
+ * buffer as soon as the last reader releases it. The writer uses the third
+ * buffer in the meantime, so the newest finished step is never lost.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+public class PositionBuffer {
+	/**
+	 * The structure the positions of each buffer belong to
+	 */
+	private GraphStructure[] structures = new GraphStructure[3];
+
+	/**
+	 * The x-coordinates of the nodes in each buffer
+	 */
+	private float[][] x = new float[3][0];
+
+	/**
+	 * The y-coordinates of the nodes in each buffer
+	 */
+	private float[][] y = new float[3][0];
+
+	/**
+	 * The index of the front buffer
+	 */
+	private int front = 0;
+
+	/**
+	 * The index of the buffer that holds a finished step that was not swapped
+	 * to the front yet, -1 if there is none
+	 */
+	private int ready = -1;
+
+	/**
+	 * The number of readers that currently hold the front buffer
+	 */
+	private int readers = 0;
+
+	/**
+	 * Hold the front buffer, so it is not swapped until release() is called
+	 */
+	public synchronized void acquire () {
+		if (readers == 0)
+			swap();
+
+		readers++;
+	}
+
+	/**
+	 * Return the structure the positions in the front buffer belong to. May
+	 * only be called between acquire() and release()
+	 * 
+	 * @return The structure or null if no positions were published yet
+	 */
+	public GraphStructure getStructure () {
+		return structures[front];
+	}
+
+	/**
+	 * Return the x-coordinate of the i-th node in the front buffer. May only
+	 * be called between acquire() and release()
+	 * 
+	 * @param i
+	 *            The index of the node in the structure
+	 * @return The x-coordinate of the node
+	 */
+	public float getX (int i) {
+		return x[front][i];
+	}
+
+	/**
+	 * Return the y-coordinate of the i-th node in the front buffer. May only
+	 * be called between acquire() and release()
+	 * 
+	 * @param i
+	 *            The index of the node in the structure
+	 * @return The y-coordinate of the node
+	 */
+	public float getY (int i) {
+		return y[front][i];
+	}
+
+	/**
+	 * Write the current positions of the nodes of the given structure into a
+	 * back buffer and swap it to the front if no reader holds the front buffer,
+	 * otherwise it is swapped when the last reader releases the front buffer.
+	 * May only be called by the thread that runs the particle system
+	 * 
+	 * @param s
+	 *            The current structure of the particle system
+	 */
+	void publish (GraphStructure s) {
+		int back = 0;
+		synchronized (this) {
+			// neither the front nor the ready buffer is overwritten
+			while (back == front || back == ready)
+				back++;
+		}
+
+		int n = s.nodes.length;
+		if (x[back].length < n) {
+			x[back] = new float[n];
+			y[back] = new float[n];
+		}
+
+		for (int i = 0; i < n; ++i) {
+			Vector2D p = s.nodes[i].position;
+			x[back][i] = p.x;
+			y[back][i] = p.y;
+		}
+		structures[back] = s;
+
+		synchronized (this) {
+			ready = back;
+
+			if (readers == 0)
+				swap();
+		}
+	}
+
+	/**
+	 * Create a snapshot of the structure and positions in the front buffer
+	 * 
+	 * @return The snapshot or null if no positions were published yet
+	 */
+	GraphSnapshot snapshot () {
+		acquire();
+		try {
+			GraphStructure s = structures[front];
+			if (s == null)
+				return null;
+
+			int n = s.nodes.length;
+			float[] sx = new float[n];
+			float[] sy = new float[n];
+			System.arraycopy(x[front], 0, sx, 0, n);
+			System.arraycopy(y[front], 0, sy, 0, n);
+
+			return new GraphSnapshot(s, sx, sy);
+		} finally {
+			release();
+		}
+	}
+
+	/**
+	 * Release the front buffer that was held by acquire()
+	 */
+	public synchronized void release () {
+		readers--;
+
+		if (readers == 0)
+			swap();
+	}
+
+	/**
+	 * Make the ready buffer the front buffer, if there is one. May only be
+	 * called while no reader holds the front buffer
+	 */
+	private void swap () {
+		if (ready != -1) {
+			front = ready;
+			ready = -1;
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package particlesystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the results of graph queries for one structural version of a
+ * particle system. A query is identified by its name and arguments; when a
+ * query arrives for a newer version, all results are discarded, so any
+ * change of the network invalidates them. Queries on older snapshots bypass
+ * the cache. Every particle system counts its versions on its own, so each
+ * one has its own cache, which its snapshots hand out.
+ * 
+ * The least recently used results are evicted when the number of results or
+ * their summed weight, e.g. the number of nodes in a result list, exceeds
+ * its bound.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+public class QueryCache {
+	/**
+	 * The maximal number of results
+	 */
+	private final int maxEntries;
+
+	/**
+	 * The maximal summed weight of the results
+	 */
+	private final long maxWeight;
+
+	/**
+	 * The results in order of their last use, least recently used first
+	 */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+	/**
+	 * The structural version the results belong to
+	 */
+	private int version = Integer.MIN_VALUE;
+
+	/**
+	 * The summed weight of the results
+	 */
+	private long weight = 0;
+
+	/**
+	 * Create an empty cache
+	 * 
+	 * @param maxEntries
+	 *            The maximal number of results
+	 * @param maxWeight
+	 *            The maximal summed weight of the results
+	 */
+	QueryCache (int maxEntries, long maxWeight) {
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * Discard all results
+	 */
+	public synchronized void clear () {
+		entries.clear();
+		weight = 0;
+	}
+
+	/**
+	 * Return the result of a query
+	 * 
+	 * @param version
+	 *            The structural version of the network the query is asked for
+	 * @param key
+	 *            The name and the arguments of the query
+	 * @return The result or null if it is not cached
+	 */
+	public synchronized Object get (int version, Object... key) {
+		if (!adopt(version))
+			return null;
+
+		Entry e = entries.get(new Key(key));
+
+		return e == null ? null : e.value;
+	}
+
+	/**
+	 * Return a list of nodes that is the result of a query
+	 * 
+	 * @param version
+	 *            The structural version of the network the query is asked for
+	 * @param key
+	 *            The name and the arguments of the query
+	 * @return A copy of the list or null if it is not cached
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayList<Node> getNodes (int version, Object... key) {
+		ArrayList<Node> nodes = (ArrayList<Node>) get(version, key);
+
+		return nodes == null ? null : new ArrayList<Node>(nodes);
+	}
+
+	/**
+	 * Store the result of a query
+	 * 
+	 * @param version
+	 *            The structural version of the network the result belongs to
+	 * @param value
+	 *            The result, it must not be changed afterwards
+	 * @param weight
+	 *            The weight of the result
+	 * @param key
+	 *            The name and the arguments of the query
+	 */
+	public synchronized void put (int version, Object value, long weight, Object... key) {
+		if (!adopt(version) || weight > maxWeight)
+			return;
+
+		Entry old = entries.put(new Key(key), new Entry(value, weight));
+		if (old != null)
+			this.weight -= old.weight;
+		this.weight += weight;
+
+		Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+		while ((entries.size() > maxEntries || this.weight > maxWeight) && it.hasNext()) {
+			this.weight -= it.next().getValue().weight;
+			it.remove();
+		}
+	}
+
+	/**
+	 * Store a list of nodes that is the result of a query, its weight is the
+	 * length of the list
+	 * 
+	 * @param version
+	 *            The structural version of the network the result belongs to
+	 * @param nodes
+	 *            The result, a copy of it is stored
+	 * @param key
+	 *            The name and the arguments of the query
+	 */
+	public void putNodes (int version, ArrayList<Node> nodes, Object... key) {
+		put(version, new ArrayList<Node>(nodes), nodes.size() + 1, key);
+	}
+
+	/**
+	 * Return the Ids of the given nodes, to be used as the argument of a query
+	 * 
+	 * @param nodes
+	 *            The nodes
+	 * @return The Ids in the order of the nodes
+	 */
+	public static String[] ids (ArrayList<Node> nodes) {
+		String[] ids = new String[nodes.size()];
+		for (int i = 0; i < ids.length; ++i)
+			ids[i] = nodes.get(i).getId();
+
+		return ids;
+	}
+
+	/**
+	 * Make the given version the version of the cache if it is newer, the
+	 * results of the old version are discarded
+	 * 
+	 * @param version
+	 *            The structural version of a query
+	 * @return true if the query belongs to the version of the cache, false if
+	 *         it belongs to an older one
+	 */
+	private boolean adopt (int version) {
+		if (version > this.version) {
+			clear();
+			this.version = version;
+		}
+
+		return version == this.version;
+	}
+
+	/**
+	 * The name and arguments of a query
+	 */
+	private static class Key {
+		/**
+		 * The name and arguments
+		 */
+		final Object[] parts;
+
+		/**
+		 * The hash code of the parts
+		 */
+		final int hash;
+
+		/**
+		 * Create a key
+		 * 
+		 * @param parts
+		 *            The name and arguments, arrays are compared by content
+		 */
+		Key (Object[] parts) {
+			this.parts = parts;
+			this.hash = Arrays.deepHashCode(parts);
+		}
+
+		public boolean equals (Object other) {
+			return other instanceof Key && Arrays.deepEquals(parts, ((Key) other).parts);
+		}
+
+		public int hashCode () {
+			return hash;
+		}
+	}
+
+	/**
+	 * A cached result and its weight
+	 */
+	private static class Entry {
+		/**
+		 * The result
+		 */
+		final Object value;
+
+		/**
+		 * The weight of the result
+		 */
+		final long weight;
+
+		/**
+		 * Create an entry
+		 * 
+		 * @param value
+		 *            The result
+		 * @param weight
+		 *            The weight of the result
+		 */
+		Entry (Object value, long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+}
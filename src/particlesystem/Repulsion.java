@@ -80,6 +80,9 @@ public class Repulsion {
 	 * ends
 	 */
 	void apply () {
+		if (!a.isVisible() || !b.isVisible())
+			return;
+
 		if (a.isFree() || b.isFree()) {
 			float a2bX = a.getPosition().getX() - b.getPosition().getX();
 			float a2bY = a.getPosition().getY() - b.getPosition().getY();
@@ -0,0 +1,228 @@
+/*
+	Cobweb
+	Copyright (C) 2010 Joachim von Eichborn
+ 
+    This file is part of Cobweb.
+
+    Cobweb is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Cobweb is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Cobweb.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package particlesystem;
+
+/**
+ * Disjoint sets over the integers 0 to n - 1 with union by rank and path
+ * compression, so any sequence of operations runs in nearly linear time.
+ * 
+ * @author Joachim von Eichborn
+ * @author http://bioinformatics.charite.de/cobweb
+ */
+public class UnionFind {
+	/**
+	 * The parent of each element, roots are their own parent
+	 */
+	int[] parent;
+
+	/**
+	 * Upper bound for the height of the tree below each root
+	 */
+	byte[] rank;
+
+	/**
+	 * The number of elements in the set of each root
+	 */
+	int[] size;
+
+	/**
+	 * The number of elements
+	 */
+	int elements;
+
+	/**
+	 * The number of sets
+	 */
+	int count;
+
+	/**
+	 * Create n sets containing one element each
+	 * 
+	 * @param n
+	 *            The number of elements
+	 */
+	public UnionFind (int n) {
+		parent = new int[n];
+		rank = new byte[n];
+		size = new int[n];
+		elements = n;
+		count = n;
+
+		for (int i = 0; i < n; ++i) {
+			parent[i] = i;
+			size[i] = 1;
+		}
+	}
+
+	/**
+	 * Add a new element in a set of its own
+	 * 
+	 * @return The new element
+	 */
+	public int add () {
+		if (elements == parent.length) {
+			int capacity = Math.max(16, 2 * elements);
+
+			int[] p = new int[capacity];
+			System.arraycopy(parent, 0, p, 0, elements);
+			parent = p;
+
+			byte[] r = new byte[capacity];
+			System.arraycopy(rank, 0, r, 0, elements);
+			rank = r;
+
+			int[] sz = new int[capacity];
+			System.arraycopy(size, 0, sz, 0, elements);
+			size = sz;
+		}
+
+		int i = elements++;
+		parent[i] = i;
+		rank[i] = 0;
+		size[i] = 1;
+		count++;
+
+		return i;
+	}
+
+	/**
+	 * Return for each element the number of its set. The sets are numbered
+	 * from 0 to numberOfSets() - 1
+	 * 
+	 * @return The set number of each element
+	 */
+	public int[] getSetIds () {
+		int n = elements;
+		int[] ids = new int[n];
+		int[] rootIds = new int[n];
+		int next = 0;
+
+		for (int i = 0; i < n; ++i)
+			rootIds[i] = -1;
+
+		for (int i = 0; i < n; ++i) {
+			int r = find(i);
+			if (rootIds[r] == -1)
+				rootIds[r] = next++;
+			ids[i] = rootIds[r];
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Return the sizes of the sets, in the order of their numbers given by
+	 * getSetIds()
+	 * 
+	 * @return The size of each set
+	 */
+	public int[] getSetSizes () {
+		int[] sizes = new int[count];
+		int next = 0;
+
+		// sets are numbered in the order of their first element, which is
+		// the order in which the roots are met here
+		boolean[] seen = new boolean[elements];
+		for (int i = 0; i < elements; ++i) {
+			int r = find(i);
+			if (!seen[r]) {
+				seen[r] = true;
+				sizes[next++] = size[r];
+			}
+		}
+
+		return sizes;
+	}
+
+	/**
+	 * Return the representative of the set containing the given element
+	 * 
+	 * @param i
+	 *            The element
+	 * @return The root of the element's set
+	 */
+	public int find (int i) {
+		int r = i;
+		while (parent[r] != r)
+			r = parent[r];
+
+		// path compression
+		while (parent[i] != r) {
+			int next = parent[i];
+			parent[i] = r;
+			i = next;
+		}
+
+		return r;
+	}
+
+	/**
+	 * Return the number of sets
+	 * 
+	 * @return The number of sets
+	 */
+	public int numberOfSets () {
+		return count;
+	}
+
+	/**
+	 * Return the size of the set containing the given element
+	 * 
+	 * @param i
+	 *            The element
+	 * @return The size of the element's set
+	 */
+	public int setSize (int i) {
+		return size[find(i)];
+	}
+
+	/**
+	 * Merge the sets containing the given elements
+	 * 
+	 * @param a
+	 *            An element of the first set
+	 * @param b
+	 *            An element of the second set
+	 * @return true if the sets were merged, false if the elements already
+	 *         were in the same set
+	 */
+	public boolean union (int a, int b) {
+		int ra = find(a);
+		int rb = find(b);
+
+		if (ra == rb)
+			return false;
+
+		if (rank[ra] < rank[rb]) {
+			int tmp = ra;
+			ra = rb;
+			rb = tmp;
+		}
+
+		parent[rb] = ra;
+		size[ra] += size[rb];
+		if (rank[ra] == rank[rb])
+			rank[ra]++;
+
+		count--;
+		return true;
+	}
+}